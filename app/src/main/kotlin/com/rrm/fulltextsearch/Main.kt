@@ -36,7 +36,7 @@ class Main {
                         })
                 }
                 println("Finished indexing in ${indexingMillis}ms.")
-                runSearchQueryREPL(indexedDirectory!!)
+                indexedDirectory!!.use { runSearchQueryREPL(it) }
             }
         }
 
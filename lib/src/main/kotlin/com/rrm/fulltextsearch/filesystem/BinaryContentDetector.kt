@@ -0,0 +1,64 @@
+package com.rrm.fulltextsearch.filesystem
+
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.Charset
+import java.nio.charset.CodingErrorAction
+import kotlin.math.ceil
+
+/**
+ * Guesses whether the content of a file is binary, e.g. a class file, an archive, a font or an
+ * image, rather than text, from its first few KB. Content is taken to be binary if it has a NUL
+ * byte, which text almost never has, or if too many of its bytes aren't valid in the charset.
+ *
+ * A detector keeps its buffer between files, so it mustn't be shared between threads.
+ */
+internal class BinaryContentDetector(charset: Charset) {
+    companion object {
+        const val PREFIX_SIZE_IN_BYTES = 4096
+
+        // Text in another charset than the one expected, e.g. Latin-1 read as UTF-8, has a few
+        // malformed bytes, even where every word has an accent, while about half of the bytes of
+        // compressed data or machine code are.
+        const val MAX_MALFORMED_BYTES_RATIO = 0.3
+    }
+
+    private val decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT)
+
+    // The text of charsets such as UTF-16 is full of NUL bytes, so they are only a sign of binary
+    // content in charsets which encode ASCII as single bytes.
+    private val isAsciiCompatible = "\u0000a".toByteArray(charset).contentEquals(byteArrayOf(0, 'a'.code.toByte()))
+
+    private val chars = CharBuffer.allocate(ceil(PREFIX_SIZE_IN_BYTES * decoder.maxCharsPerByte().toDouble()).toInt())
+
+    /**
+     * Looks at the first bytes of the content, up to [PREFIX_SIZE_IN_BYTES] of them, whatever the
+     * position of the buffer is.
+     *
+     * @param length The number of bytes of the content in the buffer.
+     */
+    fun looksBinary(content: ByteBuffer, length: Int): Boolean {
+        val prefixLength = minOf(length, PREFIX_SIZE_IN_BYTES)
+        val prefix = content.duplicate()
+        prefix.position(0).limit(prefixLength)
+        if (isAsciiCompatible && (0 until prefixLength).any { prefix.get(it) == 0.toByte() }) {
+            return true
+        }
+        var malformedBytes = 0
+        decoder.reset()
+        while (true) {
+            chars.clear()
+            val result = decoder.decode(prefix, chars, false)
+            if (result.isError) {
+                malformedBytes += result.length()
+                prefix.position(prefix.position() + result.length())
+            } else if (result.isUnderflow) {
+                // A char whose bytes are cut off at the end of the prefix isn't counted as malformed.
+                break
+            }
+        }
+        return malformedBytes > MAX_MALFORMED_BYTES_RATIO * prefixLength
+    }
+}
@@ -15,9 +15,16 @@ class Directory(private val dirPath: Path) {
     }
 
     fun <T> forEachFile(transform: (File) -> T): List<T> {
+        return files().toList().map(transform)
+    }
+
+    /**
+     * Walks the directory lazily, so that the files can be processed as they're found, without
+     * first listing them all.
+     */
+    fun files(): Sequence<File> {
         return dirPath.toFile().walkTopDown()
             .filter { it.isFile }
-            .toList().map(transform)
     }
 
 
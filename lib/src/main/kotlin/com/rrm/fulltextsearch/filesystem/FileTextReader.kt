@@ -0,0 +1,141 @@
+package com.rrm.fulltextsearch.filesystem
+
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.Charset
+import java.nio.charset.CodingErrorAction
+import java.nio.file.StandardOpenOption
+import kotlin.math.ceil
+
+/**
+ * Reads the texts of files in a given charset. Rather than reading all the bytes of a file into an
+ * array and then decoding them into a string, as [File.readText] does, a big file is mapped into
+ * memory, and the bytes of any file are decoded into a char buffer which is kept for the next
+ * file. So for a file whose text fits in the kept buffer, the only copy of the text which is made
+ * on the heap is the string itself.
+ *
+ * The kept buffers are capped at [MAX_KEPT_BUFFER_SIZE_IN_BYTES], so that a reader doesn't hold on
+ * to the memory of the biggest file it has ever read. A file whose text is bigger than that, about
+ * half a million chars, is decoded into a buffer of its own, which is dropped after the string has
+ * been copied out of it, so it costs a second, short-lived copy of its text.
+ *
+ * A reader keeps its buffers between files, so it mustn't be shared between threads. Each thread
+ * which reads files should have its own, or borrow one from a [FileTextReaderPool].
+ *
+ * @param malformedInputAction What to do with bytes which aren't valid in the charset, or which
+ * don't map to a char. By default, each is replaced by U+FFFD, like [File.readText] does. If they
+ * are reported, [readText] throws a [java.nio.charset.CharacterCodingException] instead.
+ */
+class FileTextReader(
+    charset: Charset = Charsets.UTF_8,
+    malformedInputAction: CodingErrorAction = CodingErrorAction.REPLACE
+) {
+    internal companion object {
+        // Mapping a file costs a system call and a page fault per page, which is only worth it for
+        // files which are big enough that copying them into the heap costs more.
+        const val MIN_MAPPED_FILE_SIZE_IN_BYTES = 256 * 1024
+
+        // A buffer which grew to fit a huge file is dropped after it, rather than being kept.
+        const val MAX_KEPT_BUFFER_SIZE_IN_BYTES = 1024 * 1024
+    }
+
+    private val decoder = charset.newDecoder()
+        .onMalformedInput(malformedInputAction)
+        .onUnmappableCharacter(malformedInputAction)
+    private val binaryContentDetector = BinaryContentDetector(charset)
+
+    private var bytes: ByteBuffer = ByteBuffer.allocate(0)
+    private var chars: CharBuffer = CharBuffer.allocate(0)
+
+    fun readText(file: File): String = read(file, skipBinary = false)!!
+
+    internal fun keptByteBuffer(): ByteBuffer = bytes
+
+    internal fun keptCharBuffer(): CharBuffer = chars
+
+    /**
+     * Reads the text of the file like [readText], unless its first few KB look like the content of
+     * a binary file rather than text, as judged by a [BinaryContentDetector]. The rest of a binary
+     * file isn't read.
+     *
+     * @return The text of the file, or null if it looks binary.
+     */
+    fun readTextUnlessBinary(file: File): String? = read(file, skipBinary = true)
+
+    private fun read(file: File, skipBinary: Boolean): String? {
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            val size = channel.size()
+            require(size <= Int.MAX_VALUE) { "$file is too big to be read as one text" }
+            if (size >= MIN_MAPPED_FILE_SIZE_IN_BYTES) {
+                val input = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                // Only the pages of the first few KB are loaded to look at them.
+                if (skipBinary && binaryContentDetector.looksBinary(input, size.toInt())) {
+                    return null
+                }
+                return decode(input)
+            }
+            val input = bufferOf(size.toInt())
+            if (skipBinary) {
+                readUntil(channel, input, minOf(size.toInt(), BinaryContentDetector.PREFIX_SIZE_IN_BYTES))
+                if (binaryContentDetector.looksBinary(input, input.position())) {
+                    return null
+                }
+            }
+            readUntil(channel, input, size.toInt())
+            input.flip()
+            return decode(input)
+        }
+    }
+
+    private fun bufferOf(size: Int): ByteBuffer {
+        val buffer = if (bytes.capacity() >= size) bytes else ByteBuffer.allocate(size)
+        if (size <= MAX_KEPT_BUFFER_SIZE_IN_BYTES) {
+            bytes = buffer
+        }
+        buffer.clear()
+        return buffer
+    }
+
+    /**
+     * Reads from the channel into the buffer until the buffer's position reaches the given end.
+     * The file may have been truncated since its size was taken, in which case this stops at its
+     * new end.
+     */
+    private fun readUntil(channel: FileChannel, buffer: ByteBuffer, end: Int) {
+        buffer.limit(end)
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break
+            }
+        }
+    }
+
+    private fun decode(input: ByteBuffer): String {
+        var capacity = ceil(input.remaining() * decoder.maxCharsPerByte().toDouble()).toInt()
+        while (true) {
+            val output = if (chars.capacity() >= capacity) chars else CharBuffer.allocate(capacity)
+            if (2L * capacity <= MAX_KEPT_BUFFER_SIZE_IN_BYTES) {
+                chars = output
+            }
+            output.clear()
+            input.position(0)
+            decoder.reset()
+            var result = decoder.decode(input, output, true)
+            if (result.isUnderflow) {
+                result = decoder.flush(output)
+            }
+            if (result.isOverflow) {
+                // The replacement of a malformed input can be longer than the input.
+                capacity = 2 * capacity + 16
+                continue
+            }
+            if (result.isError) {
+                result.throwException()
+            }
+            output.flip()
+            return output.toString()
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.rrm.fulltextsearch.filesystem
+
+import java.nio.charset.Charset
+import java.nio.charset.CodingErrorAction
+import java.util.concurrent.ArrayBlockingQueue
+
+/**
+ * Lends [FileTextReader]s to the threads of one indexing run, so that the buffers of a reader are
+ * reused from file to file without tying the reader to a thread. A reader is borrowed for one file
+ * at a time, and a new one is made when none is free. At most [maxIdleReaders] are kept once they
+ * are given back, and the rest are dropped, so the pool holds no more buffers than its run needs
+ * at once. The pool is meant to be dropped along with its run.
+ */
+class FileTextReaderPool(
+    private val charset: Charset = Charsets.UTF_8,
+    private val malformedInputAction: CodingErrorAction = CodingErrorAction.REPLACE,
+    maxIdleReaders: Int = Runtime.getRuntime().availableProcessors()
+) {
+    private val idleReaders = ArrayBlockingQueue<FileTextReader>(maxIdleReaders)
+
+    /**
+     * Lends a reader to [read] for as long as it runs. The reader mustn't be kept after that.
+     */
+    fun <T> withReader(read: (FileTextReader) -> T): T {
+        val fileTextReader = idleReaders.poll() ?: FileTextReader(charset, malformedInputAction)
+        try {
+            return read(fileTextReader)
+        } finally {
+            // This drops the reader if the pool already has as many idle readers as it keeps.
+            idleReaders.offer(fileTextReader)
+        }
+    }
+
+    internal fun idleReaderCount(): Int = idleReaders.size
+}
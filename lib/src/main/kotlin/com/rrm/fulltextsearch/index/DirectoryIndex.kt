@@ -0,0 +1,47 @@
+package com.rrm.fulltextsearch.index
+
+import com.rrm.fulltextsearch.search.PartialQueryResults
+import com.rrm.fulltextsearch.search.QueryMatch
+import com.rrm.fulltextsearch.search.QueryResults
+
+/**
+ * An index over all the files of a directory at once, rather than one [IndexedFile] per file, so a
+ * query is run once against the whole directory. The id of each file is its index in
+ * [indexedFiles], and the matches found are tagged with it.
+ */
+interface DirectoryIndex {
+    /**
+     * @return A view of each of the files in the directory as an [IndexedFile].
+     */
+    fun indexedFiles(): List<IndexedFile>
+
+    val fileCount: Int
+
+    /**
+     * Finds the matches of the query string across all the files, grouped by file.
+     */
+    fun queryResults(queryString: String): QueryResults
+
+    /**
+     * Finds the matches of the query string like [queryResults], but stops searching once
+     * [System.nanoTime] reaches the deadline, and returns the matches in the files searched so far.
+     *
+     * By default, the whole directory is searched in one go, so the results are never truncated.
+     * An index which searches its files one at a time should override this to check the deadline
+     * before each.
+     */
+    fun queryResults(queryString: String, deadlineNanos: Long): PartialQueryResults =
+        PartialQueryResults(queryResults(queryString), fileCount, 0)
+
+    /**
+     * Finds the same matches as [queryResults], but builds each one only when it is reached.
+     */
+    fun lazyQuery(queryString: String): Sequence<QueryMatch>
+
+    fun count(queryString: String): Int
+
+    /**
+     * Finds the relative paths of the files which contain the query string.
+     */
+    fun filesContaining(queryString: String): Set<String>
+}
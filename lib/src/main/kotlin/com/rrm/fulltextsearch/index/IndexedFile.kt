@@ -1,11 +1,106 @@
 package com.rrm.fulltextsearch.index
 
+import com.rrm.fulltextsearch.search.FileLine
 import com.rrm.fulltextsearch.search.QueryMatch
 
-interface IndexedFile {
+interface IndexedFile : AutoCloseable {
     fun relativePath(): String
 
-    fun query(queryString: String): List<QueryMatch>
+    /**
+     * The number of chars in the file. This is used to share the files out evenly between the
+     * workers searching a directory, so an IndexedFile which doesn't know it can return 0.
+     */
+    fun textLength(): Int = 0
+
+    /**
+     * Finds the matches of the query string in the file.
+     *
+     * @param fileId The id of the file in the directory it is searched through, which each match
+     * is created with, so that the directory needn't copy the matches to add it.
+     */
+    fun query(queryString: String, fileId: Int = QueryMatch.NO_FILE_ID): List<QueryMatch>
+
+    /**
+     * Rules out query strings which can't occur in the file, without touching its index, so that a
+     * directory can skip the file. This may return true for a query string which doesn't occur,
+     * but never false for one which does. By default nothing is ruled out.
+     */
+    fun mayContain(queryString: String): Boolean = true
+
+    /**
+     * Finds the same matches as [query], but builds each one only when it is reached, so a caller
+     * which stops early doesn't pay for the rest. By default this just wraps [query].
+     */
+    fun lazyQuery(queryString: String, fileId: Int = QueryMatch.NO_FILE_ID): Sequence<QueryMatch> =
+        query(queryString, fileId).asSequence()
+
+    /**
+     * Finds the offsets of the same matches as [query], without building an object for each of
+     * them. By default this just unpacks the result of [query].
+     */
+    fun queryOffsets(queryString: String): IntArray = query(queryString).map { it.offset }.toIntArray()
+
+    /**
+     * Counts the occurrences of the query string in the file, including overlapping ones, without
+     * building the matches themselves. Like [query], this finds nothing for an empty query string.
+     */
+    fun count(queryString: String): Int = query(queryString).size
+
+    /**
+     * Gets a cursor at the empty query string, which can be extended one char at a time, e.g. as a
+     * query string is typed. By default, the cursor just runs each longer query string from
+     * scratch.
+     */
+    fun prefixCursor(): PrefixCursor = RequeryingPrefixCursor(this, "")
 
     fun getLineOfChar(charOffset: Int): String
-}
\ No newline at end of file
+
+    /**
+     * Gets the same line as [getLineOfChar], along with the line number and column of the char.
+     * The indexes in this library all keep a [LineBreakIndex] to do this.
+     */
+    fun getFileLineOfChar(charOffset: Int): FileLine
+
+    /**
+     * Releases any resources held by the index which the garbage collector wouldn't free promptly,
+     * such as off-heap memory. The index can't be queried once it has been closed. Most indexes
+     * live entirely on the heap, so by default this does nothing.
+     */
+    override fun close() {
+    }
+}
+
+/**
+ * Closes each of the files, even if some of them fail to close, since a file which fails mustn't
+ * stop the later files from freeing their memory. The first failure is thrown once they have all
+ * been tried, with any later ones suppressed by it.
+ */
+internal fun closeAll(indexedFiles: Iterable<IndexedFile>) {
+    var failure: Throwable? = null
+    for (indexedFile in indexedFiles) {
+        try {
+            indexedFile.close()
+        } catch (e: Throwable) {
+            val firstFailure = failure
+            if (firstFailure == null) {
+                failure = e
+            } else {
+                firstFailure.addSuppressed(e)
+            }
+        }
+    }
+    failure?.let { throw it }
+}
+
+/**
+ * Closes the files which were built before the build of their directory failed, and rethrows the
+ * failure, with any failure to close them suppressed by it.
+ */
+internal fun closeAfterFailure(indexedFiles: Iterable<IndexedFile>, failure: Throwable): Nothing {
+    try {
+        closeAll(indexedFiles)
+    } catch (e: Throwable) {
+        failure.addSuppressed(e)
+    }
+    throw failure
+}
@@ -0,0 +1,68 @@
+package com.rrm.fulltextsearch.index
+
+import com.rrm.fulltextsearch.search.FileLine
+
+/**
+ * The offsets of the line breaks in a text, in ascending order, so that the line containing any
+ * char can be found by binary search. It is built in one pass over the text, and takes one int per
+ * line.
+ *
+ * A line break belongs to the line which it ends.
+ */
+class LineBreakIndex private constructor(
+    private val lineBreakOffsets: IntArray,
+    private val textLength: Int
+) {
+    companion object {
+        fun of(text: CharSequence): LineBreakIndex {
+            var lineBreakOffsets = IntArray(16)
+            var lineBreaks = 0
+            for (i in text.indices) {
+                if (text[i] == '\n') {
+                    if (lineBreaks == lineBreakOffsets.size) {
+                        lineBreakOffsets = lineBreakOffsets.copyOf(lineBreaks * 2)
+                    }
+                    lineBreakOffsets[lineBreaks++] = i
+                }
+            }
+            return LineBreakIndex(lineBreakOffsets.copyOf(lineBreaks), text.length)
+        }
+    }
+
+    /**
+     * @return The index of the line containing the char, counting from 0. This is the number of
+     * line breaks before the char.
+     */
+    fun lineIndexOf(charOffset: Int): Int {
+        val i = lineBreakOffsets.binarySearch(charOffset)
+        return if (i >= 0) i else -(i + 1)
+    }
+
+    /**
+     * @return The offset of the first char of the line containing the char.
+     */
+    fun lineStartOf(charOffset: Int): Int {
+        val line = lineIndexOf(charOffset)
+        return if (line == 0) 0 else lineBreakOffsets[line - 1] + 1
+    }
+
+    /**
+     * @return The offset just past the last char of the line containing the char, excluding the
+     * line break.
+     */
+    fun lineEndOf(charOffset: Int): Int {
+        val line = lineIndexOf(charOffset)
+        return if (line == lineBreakOffsets.size) textLength else lineBreakOffsets[line]
+    }
+
+    /**
+     * @param text The text which this index was built from, or anything which can give the chars
+     * between two of its offsets.
+     */
+    fun fileLineOf(charOffset: Int, text: (startIndex: Int, endIndex: Int) -> String): FileLine {
+        val line = lineIndexOf(charOffset)
+        val lineStart = if (line == 0) 0 else lineBreakOffsets[line - 1] + 1
+        val lineEnd = if (line == lineBreakOffsets.size) textLength else lineBreakOffsets[line]
+        return FileLine(line + 1, charOffset - lineStart + 1, text(lineStart, lineEnd))
+    }
+}
@@ -0,0 +1,39 @@
+package com.rrm.fulltextsearch.index
+
+/**
+ * The matches of a query string in one file, which can be narrowed down one char at a time as the
+ * query string is typed. A cursor is never changed, so the cursor of each prefix of the query
+ * string can be kept, and gone back to when a char is deleted.
+ */
+interface PrefixCursor {
+    /**
+     * @return The cursor of the query string followed by c, or null if that doesn't occur in the
+     * file, in which case no longer query string starting with it does either.
+     */
+    fun extendedBy(c: Char): PrefixCursor?
+
+    /**
+     * @return The offsets of the matches of the query string, which are the same as those found
+     * by [IndexedFile.queryOffsets].
+     */
+    fun offsets(): IntArray
+}
+
+/**
+ * The cursor of an IndexedFile which can't narrow down its matches, so it queries the file again
+ * for each char.
+ */
+internal class RequeryingPrefixCursor(
+    private val indexedFile: IndexedFile,
+    private val queryString: String
+) : PrefixCursor {
+    override fun extendedBy(c: Char): PrefixCursor? {
+        val extendedQueryString = queryString + c
+        if (!indexedFile.mayContain(extendedQueryString) || indexedFile.count(extendedQueryString) == 0) {
+            return null
+        }
+        return RequeryingPrefixCursor(indexedFile, extendedQueryString)
+    }
+
+    override fun offsets(): IntArray = indexedFile.queryOffsets(queryString)
+}
@@ -0,0 +1,108 @@
+package com.rrm.fulltextsearch.index
+
+/**
+ * A small summary of the chars and bigrams (pairs of adjacent chars) in a text, which can rule out
+ * a query string without searching the text's index. Each char and bigram sets one bit of a
+ * bitset, chosen by hashing it, like a Bloom filter with one hash function. A query string can
+ * only occur in the text if the bits of all of its bigrams, or of its char if it only has one, are
+ * set.
+ *
+ * So [mayContain] never wrongly rules a query string out, but it can wrongly let one through when
+ * other chars or bigrams happen to set the same bits. The bitset has eight to sixteen bits for
+ * each distinct char and bigram of the text, so at most about one bit in eight is set, and a
+ * bigram which isn't in the text gets through at most about one time in eight. The bitset stops
+ * growing at 16 KB, so a text with more than about 16,000 distinct chars and bigrams fills it
+ * further.
+ */
+class QGramSummary private constructor(private val bits: LongArray, private val hashShift: Int) {
+    companion object {
+        private const val MIN_BITS_LOG2 = 9
+        private const val MAX_BITS_LOG2 = 17
+        private const val BITS_PER_KEY = 8
+
+        // The keys are first counted in a bitset with twice as many bits for each key the text
+        // could have, so few of them collide and the count is close, and that bitset is then
+        // folded down. It only needs to count up to the limit, so it's at most twice as big.
+        private const val COUNTING_BITS_PER_KEY = 2 * BITS_PER_KEY
+
+        // The fractional part of the golden ratio, which spreads the keys evenly over the bitset.
+        private const val MULTIPLIER = -0x61c8864680b583ebL
+
+        // Bigrams are told apart from single chars by this bit of their keys.
+        private const val BIGRAM_FLAG = 1L shl 32
+
+        fun of(text: CharSequence): QGramSummary {
+            // A text has at most two distinct keys per char, a char and a bigram, but most texts
+            // repeat theirs, so they are counted rather than assumed from the length.
+            val countingBitsLog2 = log2Ceil(2L * COUNTING_BITS_PER_KEY * text.length)
+                .coerceIn(MIN_BITS_LOG2, MAX_BITS_LOG2 + 1)
+            val counting = QGramSummary(LongArray(1 shl (countingBitsLog2 - 6)), 64 - countingBitsLog2)
+            for (i in text.indices) {
+                counting.set(charKey(text[i]))
+                if (i + 1 < text.length) {
+                    counting.set(bigramKey(text[i], text[i + 1]))
+                }
+            }
+            val distinctKeys = counting.bits.sumOf { it.countOneBits() }
+            val bitsLog2 = log2Ceil(BITS_PER_KEY.toLong() * distinctKeys).coerceIn(MIN_BITS_LOG2, MAX_BITS_LOG2)
+            return counting.foldedTo(bitsLog2)
+        }
+
+        private fun log2Ceil(n: Long): Int = if (n <= 1) 0 else 64 - (n - 1).countLeadingZeroBits()
+
+        private fun charKey(c: Char): Long = c.code.toLong()
+
+        private fun bigramKey(a: Char, b: Char): Long = BIGRAM_FLAG or (a.code.toLong() shl 16) or b.code.toLong()
+    }
+
+    /**
+     * @return False if the query string certainly doesn't occur in the text, or true if it might.
+     */
+    fun mayContain(queryString: String): Boolean {
+        if (queryString.length == 1) {
+            return isSet(charKey(queryString[0]))
+        }
+        for (i in 0 until queryString.length - 1) {
+            if (!isSet(bigramKey(queryString[i], queryString[i + 1]))) {
+                return false
+            }
+        }
+        return true
+    }
+
+    fun sizeInBytes(): Int = bits.size * 8
+
+    /**
+     * A key's bit is the top bits of its hash, so its bit in a smaller bitset is its bit in this one
+     * with the low bits dropped, and the smaller bitset can be built without hashing the keys again.
+     */
+    private fun foldedTo(bitsLog2: Int): QGramSummary {
+        val shift = (64 - hashShift) - bitsLog2
+        if (shift == 0) {
+            return this
+        }
+        val folded = QGramSummary(LongArray(1 shl (bitsLog2 - 6)), 64 - bitsLog2)
+        for (word in bits.indices) {
+            var remaining = bits[word]
+            while (remaining != 0L) {
+                val bit = (word shl 6) + remaining.countTrailingZeroBits()
+                val foldedBit = bit ushr shift
+                folded.bits[foldedBit ushr 6] = folded.bits[foldedBit ushr 6] or (1L shl foldedBit)
+                remaining = remaining and (remaining - 1)
+            }
+        }
+        return folded
+    }
+
+    private fun set(key: Long) {
+        val bit = bitOf(key)
+        bits[bit ushr 6] = bits[bit ushr 6] or (1L shl bit)
+    }
+
+    private fun isSet(key: Long): Boolean {
+        val bit = bitOf(key)
+        return (bits[bit ushr 6] and (1L shl bit)) != 0L
+    }
+
+    private fun bitOf(key: Long): Int = ((key * MULTIPLIER) ushr hashShift).toInt()
+}
@@ -0,0 +1,259 @@
+package com.rrm.fulltextsearch.index.corpus
+
+import com.rrm.fulltextsearch.index.DirectoryIndex
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.LineBreakIndex
+import com.rrm.fulltextsearch.index.suffixarray.SuffixArray
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+import com.rrm.fulltextsearch.search.QueryResults
+
+/**
+ * A generalized suffix array over all the files of a directory. The texts of the files are joined
+ * into one, with [FILE_SEPARATOR] after each file, and a single [SuffixArray] is built over the
+ * result. A query then takes one search of the suffix array, rather than one per file, so its cost
+ * depends on the size of its result rather than on how many files there are.
+ *
+ * The offsets found in the joined text are mapped back onto files by binary searching the offsets
+ * at which the files start. A match which runs over the end of its file, which can only happen if
+ * the query string contains the separator, is not a match in any file, so it is dropped.
+ */
+class CorpusIndex private constructor(
+    private val relativePaths: List<String>,
+    fileTexts: List<String>
+) : DirectoryIndex {
+    private val text: String = fileTexts.joinToString(separator = "") { it + FILE_SEPARATOR }
+
+    // fileStarts[i] is the offset in the joined text of the first char of file i, and the last
+    // entry is the offset just past the end of the joined text.
+    private val fileStarts = IntArray(fileTexts.size + 1).also {
+        for (i in fileTexts.indices) {
+            it[i + 1] = it[i] + fileTexts[i].length + 1
+        }
+    }
+
+    private val suffixArray: SuffixArray = SuffixArray.construct(text)
+
+    // The separators aren't line breaks, so the lines found in this are clamped to their files.
+    private val lineBreaks = LineBreakIndex.of(text)
+
+    // previousRowOfSameFile[row] is the last row before this one whose suffix starts in the same
+    // file, or -1 if there isn't one. This is only needed for document listing, so it is built the
+    // first time a document listing query is made.
+    private val previousRowOfSameFile: IntArray by lazy {
+        val lastRowOfFile = IntArray(relativePaths.size) { -1 }
+        IntArray(suffixArray.size) { row ->
+            val fileId = fileOf(suffixArray.suffixAt(row))
+            lastRowOfFile[fileId].also { lastRowOfFile[fileId] = row }
+        }
+    }
+    private val previousRowMinimum: RangeMinimum by lazy { RangeMinimum(previousRowOfSameFile) }
+
+    companion object {
+        const val FILE_SEPARATOR = '\u0000'
+
+        /**
+         * @param files The relative path and text of each file in the directory.
+         */
+        fun construct(files: List<Pair<String, String>>): CorpusIndex =
+            CorpusIndex(files.map { it.first }, files.map { it.second })
+    }
+
+    override val fileCount: Int
+        get() = relativePaths.size
+
+    fun relativePath(fileId: Int): String = relativePaths[fileId]
+
+    /**
+     * @return The number of chars in the file, excluding its separator.
+     */
+    fun fileLength(fileId: Int): Int = fileStarts[fileId + 1] - fileStarts[fileId] - 1
+
+    /**
+     * Finds the matches of the query string across all the files.
+     */
+    fun query(queryString: String): List<QueryMatch> {
+        val matches = mutableListOf<QueryMatch>()
+        forEachMatch(queryString) { fileId, offset ->
+            matches.add(QueryMatch(relativePaths[fileId], offset, fileId))
+        }
+        return matches
+    }
+
+    /**
+     * Finds the same matches as [query], grouped by file. The matches come out of the suffix array
+     * in no particular order, so they are sorted by file id and then by offset, packed into longs
+     * to avoid boxing them.
+     */
+    override fun queryResults(queryString: String): QueryResults {
+        if (queryString.isEmpty()) {
+            return QueryResults.EMPTY
+        }
+        val offsets = suffixArray.offsetsOf(queryString).toIntArray()
+        val matches = LongArray(offsets.size)
+        var size = 0
+        for (offset in offsets) {
+            val fileId = fileOf(offset)
+            if (offset + queryString.length < fileStarts[fileId + 1]) {
+                matches[size++] = (fileId.toLong() shl 32) or (offset - fileStarts[fileId]).toLong()
+            }
+        }
+        matches.sort(0, size)
+
+        // The offsets array is no longer needed, so it's reused for the file-local offsets.
+        val builder = QueryResults.Builder()
+        var runStart = 0
+        for (i in 0 until size) {
+            offsets[i] = matches[i].toInt()
+            val fileId = (matches[i] ushr 32).toInt()
+            if (i + 1 == size || (matches[i + 1] ushr 32).toInt() != fileId) {
+                builder.add(fileId, relativePaths[fileId], offsets, runStart, i + 1)
+                runStart = i + 1
+            }
+        }
+        return builder.build()
+    }
+
+    /**
+     * Finds the same matches as [query], but maps each offset onto its file only when it is
+     * reached.
+     */
+    override fun lazyQuery(queryString: String): Sequence<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return emptySequence()
+        }
+        return suffixArray.offsetsOf(queryString).asSequence().mapNotNull { offset ->
+            val fileId = fileOf(offset)
+            if (offset + queryString.length < fileStarts[fileId + 1]) {
+                QueryMatch(relativePaths[fileId], offset - fileStarts[fileId], fileId)
+            } else {
+                null
+            }
+        }
+    }
+
+    /**
+     * Finds the matches of the query string in one file. This still searches the whole corpus,
+     * so querying every file in turn is slower than calling [query] once.
+     */
+    fun queryFile(fileId: Int, queryString: String): List<QueryMatch> =
+        offsetsInFile(fileId, queryString).map { QueryMatch(relativePaths[fileId], it, fileId) }
+
+    /**
+     * Finds the offsets of the same matches as [queryFile], without building an object for each.
+     */
+    fun offsetsInFile(fileId: Int, queryString: String): IntArray {
+        var offsets = IntArray(16)
+        var size = 0
+        forEachMatch(queryString) { matchFileId, offset ->
+            if (matchFileId == fileId) {
+                if (size == offsets.size) {
+                    offsets = offsets.copyOf(size * 2)
+                }
+                offsets[size++] = offset
+            }
+        }
+        return offsets.copyOf(size)
+    }
+
+    /**
+     * Counts the matches of the query string across all the files. Unless the query string
+     * contains the separator, no match can span two files, so this is a count of the suffix array
+     * alone.
+     */
+    override fun count(queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        if (FILE_SEPARATOR !in queryString) {
+            return suffixArray.countOf(queryString)
+        }
+        var count = 0
+        forEachMatch(queryString) { _, _ -> count++ }
+        return count
+    }
+
+    /**
+     * Finds the distinct files which contain the query string, in time proportional to the number
+     * of files found rather than to the number of matches, using Muthukrishnan's document listing
+     * algorithm.
+     *
+     * The suffixes which start with the query string are a range of rows of the suffix array. A
+     * file contains the query string exactly when one of these rows is the first row in the range
+     * for that file, i.e. a row whose previous row of the same file is before the range. The row
+     * with the smallest previous row in any part of the range is such a row if any row in that
+     * part is, so we find it with a range minimum query, report its file, and then look either side
+     * of it. Every range we look at either reports a new file or is a dead end, and each report
+     * leads to at most two more ranges.
+     */
+    override fun filesContaining(queryString: String): Set<String> {
+        if (queryString.isEmpty()) {
+            return setOf()
+        }
+        if (FILE_SEPARATOR in queryString) {
+            // The rows may include matches which span two files, which aren't matches at all.
+            return query(queryString).mapTo(mutableSetOf()) { it.fileRelativePath }
+        }
+        val rows = suffixArray.rowsPrefixedBy(queryString)
+        val files = mutableSetOf<String>()
+        val ranges = ArrayDeque<IntRange>()
+        ranges.addLast(rows)
+        while (ranges.isNotEmpty()) {
+            val range = ranges.removeLast()
+            if (range.isEmpty()) {
+                continue
+            }
+            val row = previousRowMinimum.positionOfMinimum(range.first, range.last + 1)
+            if (previousRowOfSameFile[row] >= rows.first) {
+                continue
+            }
+            files.add(relativePaths[fileOf(suffixArray.suffixAt(row))])
+            ranges.addLast(range.first until row)
+            ranges.addLast(row + 1..range.last)
+        }
+        return files
+    }
+
+    fun countInFile(fileId: Int, queryString: String): Int {
+        var count = 0
+        forEachMatch(queryString) { matchFileId, _ ->
+            if (matchFileId == fileId) {
+                count++
+            }
+        }
+        return count
+    }
+
+    fun getLineOfChar(fileId: Int, charOffset: Int): String = getFileLineOfChar(fileId, charOffset).text
+
+    fun getFileLineOfChar(fileId: Int, charOffset: Int): FileLine {
+        val fileStart = fileStarts[fileId]
+        val offset = fileStart + charOffset
+        val lineStart = maxOf(lineBreaks.lineStartOf(offset), fileStart)
+        val lineEnd = minOf(lineBreaks.lineEndOf(offset), fileStarts[fileId + 1] - 1)
+        return FileLine(
+            lineBreaks.lineIndexOf(offset) - lineBreaks.lineIndexOf(fileStart) + 1,
+            offset - lineStart + 1,
+            text.substring(lineStart, lineEnd)
+        )
+    }
+
+    override fun indexedFiles(): List<IndexedFile> = relativePaths.indices.map { CorpusIndexedFile(this, it) }
+
+    private inline fun forEachMatch(queryString: String, action: (fileId: Int, offset: Int) -> Unit) {
+        if (queryString.isEmpty()) {
+            return
+        }
+        for (offset in suffixArray.offsetsOf(queryString).toIntArray()) {
+            val fileId = fileOf(offset)
+            if (offset + queryString.length < fileStarts[fileId + 1]) {
+                action(fileId, offset - fileStarts[fileId])
+            }
+        }
+    }
+
+    private fun fileOf(offset: Int): Int {
+        val i = fileStarts.binarySearch(offset, toIndex = relativePaths.size)
+        return if (i >= 0) i else -(i + 1) - 1
+    }
+}
@@ -0,0 +1,31 @@
+package com.rrm.fulltextsearch.index.corpus
+
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+
+/**
+ * This type of IndexedFile is a view of one of the files in a [CorpusIndex]. It holds no index of
+ * its own.
+ */
+internal class CorpusIndexedFile(
+    private val corpusIndex: CorpusIndex,
+    private val fileIdInIndex: Int
+) : IndexedFile {
+    override fun relativePath(): String = corpusIndex.relativePath(fileIdInIndex)
+
+    override fun textLength(): Int = corpusIndex.fileLength(fileIdInIndex)
+
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> =
+        queryOffsets(queryString).map { QueryMatch(relativePath(), it, fileId) }
+
+    override fun queryOffsets(queryString: String): IntArray = corpusIndex.offsetsInFile(fileIdInIndex, queryString)
+
+    override fun count(queryString: String): Int = corpusIndex.countInFile(fileIdInIndex, queryString)
+
+    override fun getLineOfChar(charOffset: Int): String =
+        corpusIndex.getLineOfChar(fileIdInIndex, charOffset)
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine =
+        corpusIndex.getFileLineOfChar(fileIdInIndex, charOffset)
+}
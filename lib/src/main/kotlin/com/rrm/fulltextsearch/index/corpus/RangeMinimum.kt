@@ -0,0 +1,74 @@
+package com.rrm.fulltextsearch.index.corpus
+
+/**
+ * Answers range minimum queries over an array in constant time.
+ *
+ * The array is split into blocks of [BLOCK_SIZE] values. A sparse table holds, for each block and
+ * each power of two, the position of the minimum over that many blocks starting there. A query
+ * scans the partial blocks at either end of its range, and looks up the full blocks in between as
+ * two overlapping runs from the sparse table. The table takes about log2(n / BLOCK_SIZE) /
+ * BLOCK_SIZE ints per value.
+ */
+internal class RangeMinimum(private val values: IntArray) {
+    private val blockCount = (values.size + BLOCK_SIZE - 1) / BLOCK_SIZE
+
+    // sparseTable[k][b] is the position of the minimum over the blocks [b, b + 2^k).
+    private val sparseTable: Array<IntArray>
+
+    init {
+        val levels = if (blockCount == 0) 1 else 32 - Integer.numberOfLeadingZeros(blockCount)
+        sparseTable = Array(levels) { IntArray(0) }
+        sparseTable[0] = IntArray(blockCount) { block ->
+            val start = block * BLOCK_SIZE
+            minimumByScanning(start, minOf(start + BLOCK_SIZE, values.size))
+        }
+        for (k in 1 until levels) {
+            val previous = sparseTable[k - 1]
+            val half = 1 shl (k - 1)
+            sparseTable[k] = IntArray(blockCount - (1 shl k) + 1) { block ->
+                minimumOf(previous[block], previous[block + half])
+            }
+        }
+    }
+
+    companion object {
+        private const val BLOCK_SIZE = 32
+    }
+
+    /**
+     * @return The position of the smallest value in [from, to), which must not be empty. Ties go
+     * to the leftmost position.
+     */
+    fun positionOfMinimum(from: Int, to: Int): Int {
+        val firstFullBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE
+        val lastFullBlock = to / BLOCK_SIZE
+        if (firstFullBlock >= lastFullBlock) {
+            return minimumByScanning(from, to)
+        }
+        var minimum = minimumOfBlocks(firstFullBlock, lastFullBlock)
+        if (from < firstFullBlock * BLOCK_SIZE) {
+            minimum = minimumOf(minimumByScanning(from, firstFullBlock * BLOCK_SIZE), minimum)
+        }
+        if (lastFullBlock * BLOCK_SIZE < to) {
+            minimum = minimumOf(minimum, minimumByScanning(lastFullBlock * BLOCK_SIZE, to))
+        }
+        return minimum
+    }
+
+    private fun minimumOfBlocks(fromBlock: Int, toBlock: Int): Int {
+        val k = 31 - Integer.numberOfLeadingZeros(toBlock - fromBlock)
+        return minimumOf(sparseTable[k][fromBlock], sparseTable[k][toBlock - (1 shl k)])
+    }
+
+    private fun minimumByScanning(from: Int, to: Int): Int {
+        var minimum = from
+        for (i in from + 1 until to) {
+            if (values[i] < values[minimum]) {
+                minimum = i
+            }
+        }
+        return minimum
+    }
+
+    private fun minimumOf(a: Int, b: Int): Int = if (values[b] < values[a]) b else a
+}
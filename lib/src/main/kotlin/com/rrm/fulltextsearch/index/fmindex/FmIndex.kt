@@ -0,0 +1,200 @@
+package com.rrm.fulltextsearch.index.fmindex
+
+import com.rrm.fulltextsearch.index.suffixarray.SuffixArray
+import com.rrm.fulltextsearch.index.suffixtree.SuffixOffsets
+import java.util.*
+
+/**
+ * An FM-index is a compressed full-text index, which answers the same queries as a suffix array
+ * without keeping either the suffix array or the text.
+ *
+ * It is built from the Burrows-Wheeler transform (BWT) of the input, i.e. the character preceding
+ * each suffix, in suffix array order. The suffixes prefixed by a query string are found by
+ * backward search: reading the query string from its last character to its first, and narrowing
+ * a range of the suffix array using the number of occurrences of each character before each end
+ * of the range. This takes a couple of rank queries on the BWT per character of the query, no
+ * matter how big the input is, so counting occurrences is fast.
+ *
+ * The BWT is held in a [WaveletMatrix], which takes a little more than log2(alphabet size) bits
+ * per char. To locate the occurrences, we keep the suffix array entries for every
+ * [sampleRate]-th position of the input, and step backwards through the text from any other
+ * suffix until we reach one of them. To extract text, we keep the suffix array row of each of
+ * those positions too. With the default sample rate, the index of typical source code takes
+ * around 10 bits per char, compared to the 16 bits per char of the text itself.
+ */
+class FmIndex private constructor(input: CharSequence, private val sampleRate: Int) {
+    /**
+     * The length of the input. The BWT has one more row, for the suffix which is just the
+     * sentinel, which is smaller than every character.
+     */
+    val inputLength = input.length
+    private val rows = inputLength + 1
+
+    // The distinct characters of the input, in ascending order. The character alphabet[i] is the
+    // symbol i + 1, and the sentinel is the symbol 0.
+    private val alphabet: CharArray = SuffixArray.alphabetOf(input)
+
+    // smallerSymbols[s] is the number of symbols in the BWT which are smaller than s. It is also
+    // the first row of the suffixes which start with s.
+    private val smallerSymbols = IntArray(alphabet.size + 2)
+
+    private val bwt: WaveletMatrix
+    private val sampledRows: RankedBitVector
+    private val suffixSamples: IntArray
+    private val rowSamples: IntArray
+
+    init {
+        require(sampleRate > 0) { "The sample rate must be positive, but was $sampleRate" }
+
+        // Row 0 is the sentinel suffix, and the rest follow the suffix array of the input.
+        val suffixArray = SuffixArray.suffixArrayOf(input, alphabet)
+        fun suffixAt(row: Int) = if (row == 0) inputLength else suffixArray[row - 1]
+
+        val symbols = IntArray(rows)
+        for (row in 0 until rows) {
+            val suffix = suffixAt(row)
+            symbols[row] = if (suffix == 0) 0 else symbolOf(input[suffix - 1])
+        }
+        for (symbol in symbols) {
+            smallerSymbols[symbol + 1]++
+        }
+        for (symbol in 1 until smallerSymbols.size) {
+            smallerSymbols[symbol] += smallerSymbols[symbol - 1]
+        }
+        bwt = WaveletMatrix(symbols, maxOf(1, 32 - Integer.numberOfLeadingZeros(alphabet.size)))
+
+        // The sentinel suffix is always sampled, so that extracting text can start from the end.
+        fun isSampled(row: Int) = row == 0 || suffixAt(row) % sampleRate == 0
+        sampledRows = RankedBitVector(rows, ::isSampled)
+        suffixSamples = IntArray(sampledRows.rank1(rows))
+        rowSamples = IntArray(inputLength / sampleRate + 1)
+        var sample = 0
+        for (row in 0 until rows) {
+            if (isSampled(row)) {
+                val suffix = suffixAt(row)
+                suffixSamples[sample++] = suffix
+                if (suffix % sampleRate == 0) {
+                    rowSamples[suffix / sampleRate] = row
+                }
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_SAMPLE_RATE = 32
+
+        fun construct(input: CharSequence, sampleRate: Int = DEFAULT_SAMPLE_RATE): FmIndex =
+            FmIndex(input, sampleRate)
+    }
+
+    /**
+     * An estimate of the memory taken by the index, not counting object headers.
+     */
+    val sizeInBytes: Long
+        get() = bwt.sizeInBytes + sampledRows.sizeInBytes +
+                (suffixSamples.size + rowSamples.size + smallerSymbols.size).toLong() * Int.SIZE_BYTES +
+                alphabet.size.toLong() * Char.SIZE_BYTES
+
+    /**
+     * Finds the offsets of the given query string within the input string, by locating each of
+     * the suffixes found by backward search.
+     */
+    fun offsetsOf(queryString: String): SuffixOffsets {
+        val range = rowsPrefixedBy(queryString) ?: return SuffixOffsets.EMPTY
+        val offsets = IntArray(range.last - range.first + 1)
+        for (i in offsets.indices) {
+            offsets[i] = locate(range.first + i)
+        }
+        return SuffixOffsets(offsets, 0, offsets.size)
+    }
+
+    /**
+     * Finds the same offsets as [offsetsOf], but only locates each suffix when it is reached.
+     * Locating is the expensive part of an FM-index query, so this suits callers which only need
+     * some of the offsets.
+     */
+    fun lazyOffsetsOf(queryString: String): Sequence<Int> {
+        val range = rowsPrefixedBy(queryString) ?: return emptySequence()
+        return range.asSequence().map { locate(it) }
+    }
+
+    /**
+     * Counts the occurrences of the given query string within the input string, using backward
+     * search alone.
+     */
+    fun countOf(queryString: String): Int {
+        val range = rowsPrefixedBy(queryString) ?: return 0
+        return range.last - range.first + 1
+    }
+
+    /**
+     * Extracts the characters of the input from [startIndex] (inclusive) to [endIndex]
+     * (exclusive), by stepping backwards through the text from the first sampled position at or
+     * after [endIndex].
+     */
+    fun substring(startIndex: Int, endIndex: Int): String {
+        val sample = (endIndex + sampleRate - 1) / sampleRate
+        var position = sample * sampleRate
+        var row = if (position >= inputLength) {
+            position = inputLength
+            0
+        } else {
+            rowSamples[sample]
+        }
+        val chars = CharArray(endIndex - startIndex)
+        while (position > startIndex) {
+            val symbol = bwt[row]
+            position--
+            if (position < endIndex) {
+                chars[position - startIndex] = alphabet[symbol - 1]
+            }
+            row = smallerSymbols[symbol] + bwt.rank(symbol, row)
+        }
+        return String(chars)
+    }
+
+    /**
+     * @return The rows of the suffixes which start with the query string, or null if there are
+     * none.
+     */
+    private fun rowsPrefixedBy(queryString: String): IntRange? {
+        var from = 0
+        var to = rows
+        for (i in queryString.indices.reversed()) {
+            val symbol = symbolOf(queryString[i])
+            if (symbol < 0) {
+                return null
+            }
+            from = smallerSymbols[symbol] + bwt.rank(symbol, from)
+            to = smallerSymbols[symbol] + bwt.rank(symbol, to)
+            if (from >= to) {
+                return null
+            }
+        }
+        return from until to
+    }
+
+    /**
+     * Finds the offset of the suffix in the given row. The LF mapping takes us from the row of a
+     * suffix to the row of the suffix one character before it, so we follow it until we reach a
+     * row whose suffix was sampled.
+     */
+    private fun locate(row: Int): Int {
+        var currentRow = row
+        var steps = 0
+        while (!sampledRows[currentRow]) {
+            val symbol = bwt[currentRow]
+            currentRow = smallerSymbols[symbol] + bwt.rank(symbol, currentRow)
+            steps++
+        }
+        return suffixSamples[sampledRows.rank1(currentRow)] + steps
+    }
+
+    /**
+     * @return The symbol of the given character, or -1 if it doesn't occur in the input.
+     */
+    private fun symbolOf(c: Char): Int {
+        val rank = Arrays.binarySearch(alphabet, c)
+        return if (rank < 0) -1 else rank + 1
+    }
+}
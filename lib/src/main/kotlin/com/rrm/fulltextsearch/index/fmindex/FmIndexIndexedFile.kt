@@ -0,0 +1,64 @@
+package com.rrm.fulltextsearch.index.fmindex
+
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.LineBreakIndex
+import com.rrm.fulltextsearch.index.QGramSummary
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+
+/**
+ * This type of IndexedFile keeps only an [FmIndex] of the file text, and not the text itself, so
+ * it suits files which are too big to hold a suffix tree for. Lines are extracted from the index
+ * when they're needed.
+ */
+class FmIndexIndexedFile(
+    private val relativePath: String,
+    fileText: String,
+    sampleRate: Int = FmIndex.DEFAULT_SAMPLE_RATE
+) : IndexedFile {
+
+    private val fmIndex: FmIndex = FmIndex.construct(fileText, sampleRate)
+
+    private val lineBreaks = LineBreakIndex.of(fileText)
+    private val summary = QGramSummary.of(fileText)
+
+    override fun relativePath(): String = relativePath
+
+    override fun textLength(): Int = fmIndex.inputLength
+
+    override fun mayContain(queryString: String): Boolean = summary.mayContain(queryString)
+
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return listOf()
+        }
+        return fmIndex.offsetsOf(queryString).map { QueryMatch(relativePath, it, fileId) }
+    }
+
+    override fun lazyQuery(queryString: String, fileId: Int): Sequence<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return emptySequence()
+        }
+        return fmIndex.lazyOffsetsOf(queryString).map { QueryMatch(relativePath, it, fileId) }
+    }
+
+    override fun queryOffsets(queryString: String): IntArray {
+        if (queryString.isEmpty()) {
+            return IntArray(0)
+        }
+        return fmIndex.offsetsOf(queryString).toIntArray()
+    }
+
+    override fun count(queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        return fmIndex.countOf(queryString)
+    }
+
+    override fun getLineOfChar(charOffset: Int): String =
+        fmIndex.substring(lineBreaks.lineStartOf(charOffset), lineBreaks.lineEndOf(charOffset))
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine =
+        lineBreaks.fileLineOf(charOffset, fmIndex::substring)
+}
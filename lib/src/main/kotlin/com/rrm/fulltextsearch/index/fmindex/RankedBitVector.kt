@@ -0,0 +1,62 @@
+package com.rrm.fulltextsearch.index.fmindex
+
+/**
+ * A fixed size sequence of bits which can count the set bits before any position in constant time.
+ *
+ * The bits are packed into longs. Alongside them we keep the number of set bits before each block
+ * of [WORDS_PER_BLOCK] longs, so a rank query is one lookup plus a few popcounts. The counts cost
+ * one int per 512 bits, i.e. about 6% on top of the bits themselves.
+ */
+internal class RankedBitVector(val size: Int, isSet: (Int) -> Boolean) {
+    private val words = LongArray((size + 63) ushr 6)
+    private val blockRanks = IntArray(words.size / WORDS_PER_BLOCK + 1)
+
+    init {
+        for (i in 0 until size) {
+            if (isSet(i)) {
+                words[i ushr 6] = words[i ushr 6] or (1L shl (i and 63))
+            }
+        }
+        var setBits = 0
+        for (word in words.indices) {
+            if (word % WORDS_PER_BLOCK == 0) {
+                blockRanks[word / WORDS_PER_BLOCK] = setBits
+            }
+            setBits += java.lang.Long.bitCount(words[word])
+        }
+        if (words.size % WORDS_PER_BLOCK == 0) {
+            blockRanks[words.size / WORDS_PER_BLOCK] = setBits
+        }
+    }
+
+    companion object {
+        private const val WORDS_PER_BLOCK = 8
+    }
+
+    val sizeInBytes: Long
+        get() = words.size.toLong() * Long.SIZE_BYTES + blockRanks.size.toLong() * Int.SIZE_BYTES
+
+    operator fun get(i: Int): Boolean = (words[i ushr 6] ushr (i and 63)) and 1L == 1L
+
+    /**
+     * @return The number of set bits in [0, i).
+     */
+    fun rank1(i: Int): Int {
+        val word = i ushr 6
+        val block = word / WORDS_PER_BLOCK
+        var rank = blockRanks[block]
+        for (w in block * WORDS_PER_BLOCK until word) {
+            rank += java.lang.Long.bitCount(words[w])
+        }
+        val bitsInLastWord = i and 63
+        if (bitsInLastWord != 0) {
+            rank += java.lang.Long.bitCount(words[word] and ((1L shl bitsInLastWord) - 1))
+        }
+        return rank
+    }
+
+    /**
+     * @return The number of unset bits in [0, i).
+     */
+    fun rank0(i: Int): Int = i - rank1(i)
+}
@@ -0,0 +1,77 @@
+package com.rrm.fulltextsearch.index.fmindex
+
+/**
+ * A sequence of symbols in [0, 2^bitsPerSymbol) which supports access and rank queries in
+ * O(bitsPerSymbol) time, while taking only a little more than bitsPerSymbol bits per symbol.
+ *
+ * This is a wavelet matrix, which is a wavelet tree laid out level by level so that it doesn't
+ * need a node per symbol range. It has one bit vector per bit of the symbols, from the most
+ * significant down. Each level holds one bit of every symbol, in the order given by stably
+ * partitioning the symbols of the level above on its bit, zeros first, so that a position can be
+ * followed from one level to the next using only rank queries.
+ */
+internal class WaveletMatrix(symbols: IntArray, private val bitsPerSymbol: Int) {
+    val size = symbols.size
+    private val levels: Array<RankedBitVector>
+    private val zerosAtLevel = IntArray(bitsPerSymbol)
+
+    init {
+        var current = symbols.copyOf()
+        var next = IntArray(size)
+        levels = Array(bitsPerSymbol) { level ->
+            val shift = bitsPerSymbol - 1 - level
+            val bits = RankedBitVector(size) { (current[it] ushr shift) and 1 == 1 }
+            val zeros = bits.rank0(size)
+            zerosAtLevel[level] = zeros
+            var nextZero = 0
+            var nextOne = zeros
+            for (symbol in current) {
+                if ((symbol ushr shift) and 1 == 0) {
+                    next[nextZero++] = symbol
+                } else {
+                    next[nextOne++] = symbol
+                }
+            }
+            current = next.also { next = current }
+            bits
+        }
+    }
+
+    val sizeInBytes: Long
+        get() = levels.sumOf { it.sizeInBytes }
+
+    operator fun get(i: Int): Int {
+        var symbol = 0
+        var position = i
+        for (level in 0 until bitsPerSymbol) {
+            val bits = levels[level]
+            if (bits[position]) {
+                symbol = (symbol shl 1) or 1
+                position = zerosAtLevel[level] + bits.rank1(position)
+            } else {
+                symbol = symbol shl 1
+                position = bits.rank0(position)
+            }
+        }
+        return symbol
+    }
+
+    /**
+     * @return The number of occurrences of the symbol in [0, i).
+     */
+    fun rank(symbol: Int, i: Int): Int {
+        var from = 0
+        var to = i
+        for (level in 0 until bitsPerSymbol) {
+            val bits = levels[level]
+            if ((symbol ushr (bitsPerSymbol - 1 - level)) and 1 == 1) {
+                from = zerosAtLevel[level] + bits.rank1(from)
+                to = zerosAtLevel[level] + bits.rank1(to)
+            } else {
+                from = bits.rank0(from)
+                to = bits.rank0(to)
+            }
+        }
+        return to - from
+    }
+}
@@ -1,45 +1,77 @@
 package com.rrm.fulltextsearch.index.naive
 
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.LineBreakIndex
+import com.rrm.fulltextsearch.index.QGramSummary
+import com.rrm.fulltextsearch.search.FileLine
 import com.rrm.fulltextsearch.search.QueryMatch
 import java.util.regex.Pattern
 import kotlin.streams.toList
 
 class NaiveIndexedFile(private val relativePath: String, private val fileText: String) :
     IndexedFile {
+    private val lineBreaks = LineBreakIndex.of(fileText)
+    private val summary = QGramSummary.of(fileText)
+
     override fun relativePath(): String = relativePath
 
-    override fun query(queryString: String): List<QueryMatch> {
+    override fun textLength(): Int = fileText.length
+
+    override fun mayContain(queryString: String): Boolean = summary.mayContain(queryString)
+
+    // Like the suffix tree indexes, this finds overlapping matches too, so in 'aaa', 'aa' is found
+    // at 0 and 1.
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> =
+        lazyQuery(queryString, fileId).toList()
+
+    override fun lazyQuery(queryString: String, fileId: Int): Sequence<QueryMatch> {
         if (queryString.isEmpty()) {
-            return listOf()
+            return emptySequence()
         }
-        return Regex.fromLiteral(queryString)
-            .findAll(fileText)
-            .map { QueryMatch(relativePath, it.range.first) }
-            .toList()
+        return generateSequence(fileText.indexOf(queryString).takeIf { it != -1 }) { previous ->
+            fileText.indexOf(queryString, previous + 1).takeIf { it != -1 }
+        }.map { QueryMatch(relativePath, it, fileId) }
     }
 
-    override fun getLineOfChar(charOffset: Int): String {
-        // Scan to previous line break
-        var i = charOffset
-        while (i > 0 && fileText[i - 1] != '\n') {
-            i--
+    override fun queryOffsets(queryString: String): IntArray {
+        if (queryString.isEmpty()) {
+            return IntArray(0)
         }
-        val substringStart = i
-        i = charOffset
-        // Scan to next line break
-        while (i < fileText.length && fileText[i] != '\n') {
-            i++
+        var offsets = IntArray(16)
+        var size = 0
+        var i = fileText.indexOf(queryString)
+        while (i != -1) {
+            if (size == offsets.size) {
+                offsets = offsets.copyOf(size * 2)
+            }
+            offsets[size++] = i
+            i = fileText.indexOf(queryString, i + 1)
         }
-        val substringEnd = i
-        // Return the substring
-        return fileText.substring(substringStart, substringEnd)
+        return offsets.copyOf(size)
     }
 
-    // This method is useful for fuzz testing the suffix tree, because it provides accurate match
-    // behaviour for text like 'aaa' with query 'aa', which should return 0 and 1. The 'query'
-    // method of this class doesn't provide this, although it is correct in other, more typical
-    // ways.
+    override fun count(queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        var count = 0
+        var i = fileText.indexOf(queryString)
+        while (i != -1) {
+            count++
+            i = fileText.indexOf(queryString, i + 1)
+        }
+        return count
+    }
+
+    override fun getLineOfChar(charOffset: Int): String =
+        fileText.substring(lineBreaks.lineStartOf(charOffset), lineBreaks.lineEndOf(charOffset))
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine =
+        lineBreaks.fileLineOf(charOffset, fileText::substring)
+
+    // This method is useful for fuzz testing the suffix tree, because it finds the matches in a
+    // different way to 'query', using a lookahead regex, which also gives overlapping matches for
+    // text like 'aaa' with query 'aa', i.e. 0 and 1.
     fun lookaheadQuery(queryString: String): List<QueryMatch> {
         return Pattern.compile("(?=$queryString)").matcher(fileText).results()
             .map { QueryMatch(relativePath, it.start()) }
@@ -1,6 +1,7 @@
 package com.rrm.fulltextsearch.index.none
 
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.search.FileLine
 import com.rrm.fulltextsearch.search.QueryMatch
 
 /**
@@ -11,15 +12,29 @@ class NoSearchIndexedFile(private val relativePath: String) : IndexedFile {
         return relativePath
     }
 
-    override fun query(queryString: String): List<QueryMatch> {
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> {
         return listOf()
     }
 
+    override fun queryOffsets(queryString: String): IntArray {
+        return IntArray(0)
+    }
+
+    override fun count(queryString: String): Int {
+        return 0
+    }
+
     override fun getLineOfChar(charOffset: Int): String {
-        throw UnsupportedOperationException(
-            "The file '$relativePath' was not indexed, so getting the line of the character at " +
-                    "offset $charOffset is not supported, because this call was probably caused by a " +
-                    "bug."
-        )
+        throw notIndexed(charOffset)
     }
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine {
+        throw notIndexed(charOffset)
+    }
+
+    private fun notIndexed(charOffset: Int) = UnsupportedOperationException(
+        "The file '$relativePath' was not indexed, so getting the line of the character at " +
+                "offset $charOffset is not supported, because this call was probably caused by a " +
+                "bug."
+    )
 }
@@ -0,0 +1,319 @@
+package com.rrm.fulltextsearch.index.suffixarray
+
+import com.rrm.fulltextsearch.index.suffixtree.SuffixOffsets
+import java.util.*
+
+/**
+ * A suffix array lists the starting offsets of all the suffixes of the input in lexicographical
+ * order. The suffixes prefixed by a query string are therefore next to each other in the array, and
+ * can be found by binary search: one for the start of the run of suffixes which match a query
+ * string, and another for its end.
+ *
+ * The array is built in linear time using SA-IS (Nong, Zhang and Chan, "Two Efficient Algorithms
+ * for Linear Time Suffix Array Construction"). It takes 4 bytes per char, and it's a plain int
+ * array, so it's cheap to hold and trivial to write out.
+ */
+class SuffixArray private constructor(private val text: CharSequence) {
+    private val suffixArray: IntArray = suffixArrayOf(text)
+
+    companion object {
+        fun construct(input: CharSequence): SuffixArray = SuffixArray(input)
+
+        /**
+         * @return The distinct characters of the text, in ascending order.
+         */
+        internal fun alphabetOf(text: CharSequence): CharArray {
+            val presentChars = BitSet(Char.MAX_VALUE.code + 1)
+            for (i in text.indices) {
+                presentChars.set(text[i].code)
+            }
+            val alphabet = CharArray(presentChars.cardinality())
+            var c = presentChars.nextSetBit(0)
+            for (rank in alphabet.indices) {
+                alphabet[rank] = c.toChar()
+                c = presentChars.nextSetBit(c + 1)
+            }
+            return alphabet
+        }
+
+        /**
+         * SA-IS needs the input as ints, followed by a unique sentinel which is smaller than every
+         * other character. We map the characters onto the ranks of the distinct characters in the
+         * input, so that the alphabet, and with it the buckets used by SA-IS, are no bigger than
+         * they need to be.
+         */
+        internal fun suffixArrayOf(text: CharSequence, alphabet: CharArray = alphabetOf(text)): IntArray {
+            val n = text.length
+            val s = IntArray(n + 1)
+            for (i in 0 until n) {
+                s[i] = Arrays.binarySearch(alphabet, text[i]) + 1
+            }
+            // The sentinel is the suffix at s[n], which sorts first, so we drop it.
+            return sais(s, alphabet.size + 1).copyOfRange(1, n + 1)
+        }
+
+        /**
+         * Builds the suffix array of s, in which every value is in [0, alphabetSize), and whose
+         * last value is a 0 that appears nowhere else.
+         */
+        private fun sais(s: IntArray, alphabetSize: Int): IntArray {
+            val n = s.size
+            val sa = IntArray(n)
+            if (n == 1) {
+                return sa
+            }
+
+            // A suffix is S-type if it is smaller than the suffix following it, and L-type
+            // otherwise. An LMS (leftmost S-type) suffix is an S-type suffix following an L-type one.
+            val isSType = BooleanArray(n)
+            isSType[n - 1] = true
+            for (i in n - 2 downTo 0) {
+                isSType[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && isSType[i + 1])
+            }
+            fun isLms(i: Int) = isLms(isSType, i)
+
+            val buckets = Buckets(s, alphabetSize)
+
+            fun induceSort() {
+                // L-type suffixes are placed at the heads of their buckets, from left to right.
+                buckets.pointAtHeads()
+                for (i in 0 until n) {
+                    val j = sa[i] - 1
+                    if (j >= 0 && !isSType[j]) {
+                        sa[buckets.next[s[j]]++] = j
+                    }
+                }
+                // S-type suffixes are placed at the tails of their buckets, from right to left.
+                buckets.pointAtTails()
+                for (i in n - 1 downTo 0) {
+                    val j = sa[i] - 1
+                    if (j >= 0 && isSType[j]) {
+                        sa[buckets.next[s[j]]--] = j
+                    }
+                }
+            }
+
+            // Sort the LMS substrings, by inducing from the LMS suffixes in text order.
+            sa.fill(-1)
+            buckets.pointAtTails()
+            for (i in 1 until n) {
+                if (isLms(i)) {
+                    sa[buckets.next[s[i]]--] = i
+                }
+            }
+            induceSort()
+
+            // Move the sorted LMS substrings to the front of the array, and name them so that
+            // equal LMS substrings have equal names.
+            var lmsCount = 0
+            for (i in 0 until n) {
+                if (isLms(sa[i])) {
+                    sa[lmsCount++] = sa[i]
+                }
+            }
+            sa.fill(-1, lmsCount, n)
+            var names = 0
+            var previous = -1
+            for (i in 0 until lmsCount) {
+                val position = sa[i]
+                if (previous == -1 || !lmsSubstringsEqual(s, isSType, position, previous)) {
+                    names++
+                    previous = position
+                }
+                // LMS positions are at least two apart, so halving them can't cause collisions.
+                sa[lmsCount + position / 2] = names - 1
+            }
+            var j = n - 1
+            for (i in n - 1 downTo lmsCount) {
+                if (sa[i] >= 0) {
+                    sa[j--] = sa[i]
+                }
+            }
+
+            // Sort the LMS suffixes, recursing on the string of names if the names aren't unique.
+            val reducedString = sa.copyOfRange(n - lmsCount, n)
+            val reducedSuffixArray = if (names < lmsCount) {
+                sais(reducedString, names)
+            } else {
+                IntArray(lmsCount).also {
+                    for (i in 0 until lmsCount) {
+                        it[reducedString[i]] = i
+                    }
+                }
+            }
+            val lmsPositions = IntArray(lmsCount)
+            var k = 0
+            for (i in 1 until n) {
+                if (isLms(i)) {
+                    lmsPositions[k++] = i
+                }
+            }
+
+            // Induce the order of all the suffixes from the sorted LMS suffixes.
+            sa.fill(-1)
+            buckets.pointAtTails()
+            for (i in lmsCount - 1 downTo 0) {
+                val position = lmsPositions[reducedSuffixArray[i]]
+                sa[buckets.next[s[position]]--] = position
+            }
+            induceSort()
+            return sa
+        }
+
+        private fun isLms(isSType: BooleanArray, i: Int) = i > 0 && isSType[i] && !isSType[i - 1]
+
+        /**
+         * Compares the LMS substrings starting at a and b, each of which runs up to and including
+         * the next LMS position.
+         */
+        private fun lmsSubstringsEqual(s: IntArray, isSType: BooleanArray, a: Int, b: Int): Boolean {
+            var d = 0
+            while (true) {
+                if (s[a + d] != s[b + d] || isSType[a + d] != isSType[b + d]) {
+                    return false
+                }
+                if (d > 0 && (isLms(isSType, a + d) || isLms(isSType, b + d))) {
+                    return isLms(isSType, a + d) && isLms(isSType, b + d)
+                }
+                d++
+            }
+        }
+    }
+
+    /**
+     * Finds the offsets of the given query string within the input string. The suffixes which
+     * start with the query string are contiguous in the suffix array, so they are found with the
+     * same two binary searches as [countOf], and the offsets are a view of the rows between them.
+     */
+    fun offsetsOf(queryString: String): SuffixOffsets {
+        val rows = rowsPrefixedBy(queryString)
+        if (rows.isEmpty()) {
+            return SuffixOffsets.EMPTY
+        }
+        return SuffixOffsets(suffixArray, rows.first, rows.last + 1)
+    }
+
+    /**
+     * Counts the occurrences of the given query string within the input string, with two binary
+     * searches rather than by visiting each occurrence.
+     */
+    fun countOf(queryString: String): Int {
+        val rows = rowsPrefixedBy(queryString)
+        return rows.last - rows.first + 1
+    }
+
+    internal val size: Int
+        get() = suffixArray.size
+
+    internal fun suffixAt(row: Int): Int = suffixArray[row]
+
+    /**
+     * @return The rows of the suffix array whose suffixes start with the query string.
+     */
+    internal fun rowsPrefixedBy(queryString: String): IntRange {
+        val first = firstSuffixNotLessThan(queryString)
+        if (first == suffixArray.size || !startsWith(suffixArray[first], queryString)) {
+            return IntRange.EMPTY
+        }
+        return first until firstSuffixNotPrefixedBy(queryString, first)
+    }
+
+    /**
+     * A binary search for the first suffix which is not lexicographically less than the query
+     * string. We keep track of how much of the query string matches the suffixes at either end of
+     * the search range. Every suffix between them shares at least the smaller of the two, so we
+     * can skip comparing that many characters.
+     *
+     * This is the simple accelerant of Manber and Myers, so a search can still compare O(m log n)
+     * chars in the worst case. Their O(m + log n) search needs the LCPs of the midpoints with both
+     * ends of each search range, which would take another two arrays of the size of the suffix
+     * array, for queries which are mostly a few chars long.
+     */
+    private fun firstSuffixNotLessThan(queryString: String): Int {
+        var low = 0
+        var high = suffixArray.size
+        var lowMatch = 0
+        var highMatch = 0
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            val suffix = suffixArray[mid]
+            var matched = minOf(lowMatch, highMatch)
+            while (matched < queryString.length && suffix + matched < text.length &&
+                text[suffix + matched] == queryString[matched]
+            ) {
+                matched++
+            }
+            val suffixIsLess = matched < queryString.length &&
+                    (suffix + matched == text.length || text[suffix + matched] < queryString[matched])
+            if (suffixIsLess) {
+                low = mid + 1
+                lowMatch = matched
+            } else {
+                high = mid
+                highMatch = matched
+            }
+        }
+        return low
+    }
+
+    /**
+     * A binary search for the end of the run of suffixes prefixed by the query string, which
+     * starts at [first].
+     */
+    private fun firstSuffixNotPrefixedBy(queryString: String, first: Int): Int {
+        var low = first + 1
+        var high = suffixArray.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (startsWith(suffixArray[mid], queryString)) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        return low
+    }
+
+    private fun startsWith(suffix: Int, queryString: String): Boolean {
+        if (suffix + queryString.length > text.length) {
+            return false
+        }
+        for (i in queryString.indices) {
+            if (text[suffix + i] != queryString[i]) {
+                return false
+            }
+        }
+        return true
+    }
+
+    /**
+     * The bucket of a character is the range of the suffix array holding the suffixes which start
+     * with it. [next] points into each bucket, at either its head or its tail.
+     */
+    private class Buckets(s: IntArray, alphabetSize: Int) {
+        private val sizes = IntArray(alphabetSize)
+        val next = IntArray(alphabetSize)
+
+        init {
+            for (c in s) {
+                sizes[c]++
+            }
+        }
+
+        fun pointAtHeads() {
+            var sum = 0
+            for (c in sizes.indices) {
+                next[c] = sum
+                sum += sizes[c]
+            }
+        }
+
+        fun pointAtTails() {
+            var sum = 0
+            for (c in sizes.indices) {
+                sum += sizes[c]
+                next[c] = sum - 1
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.rrm.fulltextsearch.index.suffixarray
+
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.LineBreakIndex
+import com.rrm.fulltextsearch.index.QGramSummary
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+
+/**
+ * This type of IndexedFile answers queries by binary searching a [SuffixArray] of the file text.
+ */
+class SuffixArrayIndexedFile(
+    private val relativePath: String, private val fileText: String
+) : IndexedFile {
+
+    private val suffixArray: SuffixArray = SuffixArray.construct(fileText)
+    private val lineBreaks = LineBreakIndex.of(fileText)
+    private val summary = QGramSummary.of(fileText)
+
+    override fun relativePath(): String = relativePath
+
+    override fun textLength(): Int = fileText.length
+
+    override fun mayContain(queryString: String): Boolean = summary.mayContain(queryString)
+
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return listOf()
+        }
+        return suffixArray.offsetsOf(queryString).map { QueryMatch(relativePath, it, fileId) }
+    }
+
+    override fun lazyQuery(queryString: String, fileId: Int): Sequence<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return emptySequence()
+        }
+        return suffixArray.offsetsOf(queryString).asSequence().map { QueryMatch(relativePath, it, fileId) }
+    }
+
+    override fun queryOffsets(queryString: String): IntArray {
+        if (queryString.isEmpty()) {
+            return IntArray(0)
+        }
+        return suffixArray.offsetsOf(queryString).toIntArray()
+    }
+
+    override fun count(queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        return suffixArray.countOf(queryString)
+    }
+
+    override fun getLineOfChar(charOffset: Int): String =
+        fileText.substring(lineBreaks.lineStartOf(charOffset), lineBreaks.lineEndOf(charOffset))
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine =
+        lineBreaks.fileLineOf(charOffset, fileText::substring)
+}
@@ -0,0 +1,161 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+/**
+ * The edges from a suffix tree node to its children, keyed by the leading character of each edge.
+ *
+ * Most nodes have only a few children, so to begin with the edges are kept in small parallel
+ * arrays which are sorted by leading character. Once a node has more than [MAX_SORTED_EDGES]
+ * children, as the root node usually does, the edges are moved into an open-addressed hash table
+ * which uses linear probing. Either way, no boxed characters or map entries are allocated, and
+ * leaf nodes, which never have children, don't allocate any arrays at all.
+ */
+class ChildEdges<N : Any> {
+    private var keys: CharArray? = null
+    private var values: Array<Any?>? = null
+    private var isHashTable = false
+
+    var size = 0
+        private set
+
+    fun isEmpty(): Boolean = size == 0
+
+    operator fun get(c: Char): N? {
+        val keys = keys ?: return null
+        val values = values!!
+        if (isHashTable) {
+            val mask = keys.size - 1
+            var i = hashSlot(c, mask)
+            // Slots are never emptied, so an empty slot means that the key is absent.
+            while (values[i] != null) {
+                if (keys[i] == c) {
+                    return nodeAt(values, i)
+                }
+                i = (i + 1) and mask
+            }
+            return null
+        }
+        for (i in 0 until size) {
+            if (keys[i] == c) {
+                return nodeAt(values, i)
+            }
+            if (keys[i] > c) {
+                return null
+            }
+        }
+        return null
+    }
+
+    operator fun set(c: Char, node: N) {
+        if (isHashTable) {
+            putInHashTable(c, node)
+            return
+        }
+
+        val keys = keys ?: CharArray(2).also { keys = it }
+        val values = values ?: arrayOfNulls<Any?>(2).also { values = it }
+        var i = 0
+        while (i < size && keys[i] < c) {
+            i++
+        }
+        if (i < size && keys[i] == c) {
+            values[i] = node
+            return
+        }
+        if (size == MAX_SORTED_EDGES) {
+            convertToHashTable()
+            putInHashTable(c, node)
+            return
+        }
+        if (size == keys.size) {
+            this.keys = keys.copyOf(keys.size * 2)
+            this.values = values.copyOf(values.size * 2)
+        }
+        val newKeys = this.keys!!
+        val newValues = this.values!!
+        newKeys.copyInto(newKeys, i + 1, i, size)
+        newValues.copyInto(newValues, i + 1, i, size)
+        newKeys[i] = c
+        newValues[i] = node
+        size++
+    }
+
+    fun forEach(action: (Char, N) -> Unit) {
+        val keys = keys ?: return
+        val values = values!!
+        for (i in keys.indices) {
+            if (values[i] != null) {
+                action(keys[i], nodeAt(values, i))
+            }
+        }
+    }
+
+    fun <R> map(transform: (Char, N) -> R): List<R> {
+        val result = ArrayList<R>(size)
+        forEach { c, node -> result.add(transform(c, node)) }
+        return result
+    }
+
+    private fun putInHashTable(c: Char, node: N) {
+        var keys = keys!!
+        var values = values!!
+        // We keep the load factor at or below one half, so that probe sequences stay short.
+        if ((size + 1) * 2 > keys.size) {
+            rehash(keys.size * 2)
+            keys = this.keys!!
+            values = this.values!!
+        }
+        val mask = keys.size - 1
+        var i = hashSlot(c, mask)
+        while (values[i] != null) {
+            if (keys[i] == c) {
+                values[i] = node
+                return
+            }
+            i = (i + 1) and mask
+        }
+        keys[i] = c
+        values[i] = node
+        size++
+    }
+
+    private fun convertToHashTable() {
+        rehash(INITIAL_HASH_TABLE_CAPACITY)
+        isHashTable = true
+    }
+
+    private fun rehash(capacity: Int) {
+        val oldKeys = keys!!
+        val oldValues = values!!
+        val newKeys = CharArray(capacity)
+        val newValues = arrayOfNulls<Any?>(capacity)
+        val mask = capacity - 1
+        for (j in oldKeys.indices) {
+            if (oldValues[j] == null) {
+                continue
+            }
+            var i = hashSlot(oldKeys[j], mask)
+            while (newValues[i] != null) {
+                i = (i + 1) and mask
+            }
+            newKeys[i] = oldKeys[j]
+            newValues[i] = oldValues[j]
+        }
+        keys = newKeys
+        values = newValues
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun nodeAt(values: Array<Any?>, i: Int): N = values[i] as N
+
+    private companion object {
+        const val MAX_SORTED_EDGES = 8
+        const val INITIAL_HASH_TABLE_CAPACITY = 32
+
+        // Fibonacci hashing spreads runs of adjacent characters, such as the letters of the
+        // alphabet, across the table.
+        fun hashSlot(c: Char, mask: Int): Int {
+            val h = c.code * -0x61c88647
+            return (h xor (h ushr 16)) and mask
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+/**
+ * This is a suffix tree which is built using the same Ukkonen construction as [SuffixTree], but
+ * which stores its nodes in parallel arrays of ints rather than as objects. A node is just an index
+ * into these arrays, so the tree is a handful of arrays no matter how big the input is, rather than
+ * millions of small objects, each of which has an object header and a pointer to the enclosing
+ * tree.
+ *
+ * The children of a node are kept in a singly linked list, which runs from [firstChild] through
+ * [nextSibling]. Leaf edges end at [LEAF_END], which stands for the end of the input inserted so
+ * far, in the same way as the leaf nodes of [SuffixTree].
+ *
+ * Once the tree is built, its leaves are numbered in depth-first order, in the same way as the
+ * leaves of [SuffixTree], so that the leaves under each node occupy the range
+ * [firstLeaf, lastLeaf) of [leafSuffixes].
+ */
+class CompactSuffixTree private constructor(input: CharSequence) {
+    // The input, followed by the terminal character which makes the tree canonical.
+    internal val text = CharArray(input.length + 1)
+    private var currentlyInsertedInputLength = 0
+    private var remainingSuffixes = 0
+
+    // A suffix tree for a string of n characters has at most n leaves and n - 1 internal nodes,
+    // plus the root, and the text we insert has the extra terminal character. The node arrays are
+    // readable within this module so that the built tree can be copied elsewhere, e.g. off-heap.
+    private val maxNodes = 2 * text.size + 1
+    internal var start = IntArray(maxNodes)
+        private set
+    internal var end = IntArray(maxNodes)
+        private set
+    private var suffixLink = IntArray(maxNodes)
+    internal var firstChild = IntArray(maxNodes)
+        private set
+    internal var nextSibling = IntArray(maxNodes)
+        private set
+    private var leafSuffix = IntArray(maxNodes)
+    internal var nodeCount = 0
+        private set
+
+    internal var leafSuffixes = IntArray(0)
+        private set
+    internal var firstLeaf = IntArray(0)
+        private set
+    internal var lastLeaf = IntArray(0)
+        private set
+
+    private var activeNode = ROOT
+    private var activeLength = 0
+    private var activeEdge = 0
+    private var suffixLinkCandidate = NONE
+
+    init {
+        for (i in input.indices) {
+            text[i] = input[i]
+        }
+        // The root node has an empty edge label.
+        newNode(-1, -1)
+    }
+
+    companion object {
+        internal const val ROOT = 0
+        internal const val NONE = -1
+        private const val LEAF_END = Int.MAX_VALUE
+
+        fun ukkonenConstruction(input: CharSequence): CompactSuffixTree {
+            val suffixTree = CompactSuffixTree(input)
+            for (i in input.indices) {
+                suffixTree.addChar(input[i])
+            }
+            suffixTree.canonize()
+            suffixTree.trimToSize()
+            suffixTree.numberLeaves()
+            return suffixTree
+        }
+    }
+
+    /**
+     * Finds the offsets of the given query string within the input string by exploiting the built
+     * tree.
+     */
+    fun offsetsOf(queryString: String): SuffixOffsets {
+        val node = nodeMatching(queryString)
+        if (node == NONE) {
+            return SuffixOffsets.EMPTY
+        }
+        return SuffixOffsets(leafSuffixes, firstLeaf[node], lastLeaf[node])
+    }
+
+    /**
+     * Counts the occurrences of the given query string within the input string, without
+     * collecting their offsets.
+     */
+    fun countOf(queryString: String): Int {
+        val node = nodeMatching(queryString)
+        if (node == NONE) {
+            return 0
+        }
+        return lastLeaf[node] - firstLeaf[node]
+    }
+
+    private fun addChar(c: Char) {
+        // The character is already in the text, so inserting it just extends the text which the
+        // leaf edges run to the end of.
+        text[currentlyInsertedInputLength++] = c
+        remainingSuffixes++
+        addRemainingSuffixes(c)
+    }
+
+    /**
+     * This converts the implicit suffix tree into a canonical suffix tree by adding a character
+     * that doesn't appear elsewhere in the input.
+     */
+    private fun canonize() {
+        addChar('\u0000')
+    }
+
+    /**
+     * Once the tree is built, the suffix links are no longer needed, and there is no need to keep
+     * room for more nodes than the tree actually has.
+     */
+    private fun trimToSize() {
+        start = start.copyOf(nodeCount)
+        end = end.copyOf(nodeCount)
+        firstChild = firstChild.copyOf(nodeCount)
+        nextSibling = nextSibling.copyOf(nodeCount)
+        leafSuffix = leafSuffix.copyOf(nodeCount)
+        suffixLink = IntArray(0)
+    }
+
+    /**
+     * Numbers the leaves in depth-first order, using an explicit stack because the tree can be as
+     * deep as the input is long. A node is pushed onto the stack a second time, as its bitwise
+     * inverse, so that we know when we've numbered all the leaves under it.
+     *
+     * The leaf numbering makes the per-node leaf suffixes redundant, so they are dropped.
+     */
+    private fun numberLeaves() {
+        // Once the tree is canonical, every suffix, including the terminal one, has a leaf.
+        leafSuffixes = IntArray(text.size)
+        firstLeaf = IntArray(nodeCount)
+        lastLeaf = IntArray(nodeCount)
+        var nextLeaf = 0
+        var stack = IntArray(16)
+        var stackSize = 0
+        stack[stackSize++] = ROOT
+        while (stackSize > 0) {
+            val node = stack[--stackSize]
+            if (node < 0) {
+                lastLeaf[node.inv()] = nextLeaf
+                continue
+            }
+
+            firstLeaf[node] = nextLeaf
+            if (firstChild[node] == NONE) {
+                leafSuffixes[nextLeaf++] = leafSuffix[node]
+                lastLeaf[node] = nextLeaf
+                continue
+            }
+            stack = pushed(stack, stackSize++, node.inv())
+            var child = firstChild[node]
+            while (child != NONE) {
+                stack = pushed(stack, stackSize++, child)
+                child = nextSibling[child]
+            }
+        }
+        leafSuffix = IntArray(0)
+    }
+
+    /**
+     * Add the suffixes that still need to be made explicit in the tree. This follows
+     * [SuffixTree.ActivePoint.addRemainingSuffixes], which documents each step.
+     */
+    private fun addRemainingSuffixes(c: Char) {
+        suffixLinkCandidate = NONE
+
+        while (remainingSuffixes > 0) {
+            if (addSuffix(c) == SuffixExtensionRule.RULE_THREE) {
+                break
+            }
+            remainingSuffixes--
+
+            if (activeNode == ROOT && activeLength > 0) {
+                activeLength--
+                activeEdge = currentlyInsertedInputLength - remainingSuffixes
+            } else {
+                activeNode = suffixLink[activeNode]
+            }
+        }
+    }
+
+    private fun addSuffix(c: Char): SuffixExtensionRule {
+        while (true) {
+            if (activeLength == 0) {
+                activeEdge = currentlyInsertedInputLength - 1
+            }
+
+            val nextNode = childStartingWith(activeNode, text[activeEdge])
+            if (nextNode == NONE) {
+                addChild(activeNode, newLeaf())
+                addSuffixLink(activeNode)
+                return SuffixExtensionRule.RULE_TWO
+            }
+
+            // Canonize the reference to the active point by stepping down the tree.
+            val edgeLength = edgeLength(nextNode)
+            if (activeLength >= edgeLength) {
+                activeEdge += edgeLength
+                activeLength -= edgeLength
+                activeNode = nextNode
+                continue
+            }
+
+            if (text[start[nextNode] + activeLength] == c) {
+                activeLength++
+                addSuffixLink(activeNode)
+                return SuffixExtensionRule.RULE_THREE
+            }
+
+            // Split the edge into nextNode with a new internal node, which takes the place of
+            // nextNode amongst the children of the active node.
+            val internalNode = newNode(start[nextNode], start[nextNode] + activeLength)
+            replaceChild(activeNode, nextNode, internalNode)
+            addChild(internalNode, newLeaf())
+            start[nextNode] += activeLength
+            addChild(internalNode, nextNode)
+            addSuffixLink(internalNode)
+            return SuffixExtensionRule.RULE_TWO
+        }
+    }
+
+    private fun addSuffixLink(node: Int) {
+        if (suffixLinkCandidate != NONE) {
+            suffixLink[suffixLinkCandidate] = node
+        }
+        suffixLinkCandidate = node
+    }
+
+    private fun newNode(nodeStart: Int, nodeEnd: Int): Int {
+        val node = nodeCount++
+        start[node] = nodeStart
+        end[node] = nodeEnd
+        suffixLink[node] = ROOT
+        firstChild[node] = NONE
+        nextSibling[node] = NONE
+        leafSuffix[node] = NONE
+        return node
+    }
+
+    private fun newLeaf(): Int {
+        val leaf = newNode(currentlyInsertedInputLength - 1, LEAF_END)
+        leafSuffix[leaf] = currentlyInsertedInputLength - remainingSuffixes
+        return leaf
+    }
+
+    private fun addChild(parent: Int, child: Int) {
+        nextSibling[child] = firstChild[parent]
+        firstChild[parent] = child
+    }
+
+    private fun replaceChild(parent: Int, oldChild: Int, newChild: Int) {
+        nextSibling[newChild] = nextSibling[oldChild]
+        nextSibling[oldChild] = NONE
+        if (firstChild[parent] == oldChild) {
+            firstChild[parent] = newChild
+            return
+        }
+        var sibling = firstChild[parent]
+        while (nextSibling[sibling] != oldChild) {
+            sibling = nextSibling[sibling]
+        }
+        nextSibling[sibling] = newChild
+    }
+
+    private fun childStartingWith(node: Int, c: Char): Int {
+        var child = firstChild[node]
+        while (child != NONE && text[start[child]] != c) {
+            child = nextSibling[child]
+        }
+        return child
+    }
+
+    private fun edgeLength(node: Int): Int =
+        minOf(end[node], currentlyInsertedInputLength) - start[node]
+
+    /**
+     * @return The node at or below the point in the tree which is reached by reading the query
+     * string from the root, or [NONE] if the query string doesn't occur in the input.
+     */
+    private fun nodeMatching(queryString: String): Int {
+        var i = 0
+        var node = ROOT
+        while (i < queryString.length) {
+            node = childStartingWith(node, queryString[i])
+            if (node == NONE) {
+                return NONE
+            }
+            val edgeStart = start[node]
+            val charsToCompare = minOf(edgeLength(node), queryString.length - i)
+            for (j in 0 until charsToCompare) {
+                if (queryString[i + j] != text[edgeStart + j]) {
+                    return NONE
+                }
+            }
+            i += charsToCompare
+        }
+        return node
+    }
+
+    private fun pushed(stack: IntArray, index: Int, node: Int): IntArray {
+        val stackWithRoom = if (index == stack.size) stack.copyOf(stack.size * 2) else stack
+        stackWithRoom[index] = node
+        return stackWithRoom
+    }
+
+    override fun toString(): String {
+        return "CompactSuffixTree(rootNode={\n${nodeToString(ROOT, 1)}\n})"
+    }
+
+    private fun nodeToString(node: Int, indentationLevel: Int): String {
+        val label = if (node == ROOT) "" else String(text, start[node], edgeLength(node))
+        if (firstChild[node] == NONE) {
+            return "Leaf(start=${start[node]}, suffix=${leafSuffixes[firstLeaf[node]]}, label=$label)"
+        }
+        val children = StringBuilder()
+        var child = firstChild[node]
+        while (child != NONE) {
+            children.append("\n${"\t".repeat(indentationLevel)}'${text[start[child]]}'=")
+                .append(nodeToString(child, indentationLevel + 1))
+            child = nextSibling[child]
+        }
+        return "Node(start=${start[node]}, end=${end[node]}, label=$label, edges:[$children])"
+    }
+}
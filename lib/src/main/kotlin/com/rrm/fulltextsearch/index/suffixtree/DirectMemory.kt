@@ -0,0 +1,32 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+import java.nio.ByteBuffer
+
+/**
+ * Direct ByteBuffers are normally only freed once the garbage collector notices that they are
+ * unreachable, which may be long after we have finished with them. The JDK has no public API for
+ * freeing them sooner, but sun.misc.Unsafe.invokeCleaner, which is available from Java 9 onwards,
+ * does this. If it isn't available, then freeing the memory is left to the garbage collector.
+ */
+internal object DirectMemory {
+    private val unsafe: Any? = try {
+        val theUnsafe = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe")
+        theUnsafe.isAccessible = true
+        theUnsafe.get(null)
+    } catch (e: Exception) {
+        null
+    }
+
+    private val invokeCleaner = try {
+        unsafe?.javaClass?.getMethod("invokeCleaner", ByteBuffer::class.java)
+    } catch (e: Exception) {
+        null
+    }
+
+    /**
+     * Frees the memory behind the given direct buffer. The buffer must not be used afterwards.
+     */
+    fun free(buffer: ByteBuffer) {
+        invokeCleaner?.invoke(unsafe, buffer)
+    }
+}
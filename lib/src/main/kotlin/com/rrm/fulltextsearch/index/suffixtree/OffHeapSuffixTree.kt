@@ -0,0 +1,184 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+import com.rrm.fulltextsearch.index.suffixtree.CompactSuffixTree.Companion.NONE
+import com.rrm.fulltextsearch.index.suffixtree.CompactSuffixTree.Companion.ROOT
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * This is a read-only copy of a [CompactSuffixTree] whose node arrays and text are stored outside
+ * the Java heap, in a single direct ByteBuffer. The garbage collector never has to trace or copy
+ * the tree, so the heap can be sized for the work done with the index rather than for the index
+ * itself. Note that the JVM limits direct memory to the maximum heap size unless
+ * -XX:MaxDirectMemorySize is set.
+ *
+ * The memory is released when the tree is closed. Closing waits for queries which are in progress
+ * to finish, and any query made after the tree is closed fails with an IllegalStateException.
+ */
+class OffHeapSuffixTree private constructor(tree: CompactSuffixTree) : AutoCloseable {
+    private val nodeCount = tree.nodeCount
+
+    /**
+     * The length of the text in the tree, which includes the terminal character.
+     */
+    private val textLength = tree.text.size
+
+    // The memory holds, in order, the start, end, first child, next sibling, first leaf and last
+    // leaf arrays of the nodes, then the leaf suffixes in depth-first order, and then the text.
+    private val leafSuffixesByteOffset = ARRAYS * nodeCount * Int.SIZE_BYTES
+    private val textByteOffset = leafSuffixesByteOffset + textLength * Int.SIZE_BYTES
+    private var memory: ByteBuffer? = allocate(tree)
+
+    private val lock = ReentrantReadWriteLock()
+
+    companion object {
+        private const val START = 0
+        private const val END = 1
+        private const val FIRST_CHILD = 2
+        private const val NEXT_SIBLING = 3
+        private const val FIRST_LEAF = 4
+        private const val LAST_LEAF = 5
+        private const val ARRAYS = 6
+
+        fun ukkonenConstruction(input: CharSequence): OffHeapSuffixTree {
+            // The tree is built on the heap, and then copied off it. The on-heap tree is garbage as
+            // soon as this function returns.
+            return OffHeapSuffixTree(CompactSuffixTree.ukkonenConstruction(input))
+        }
+    }
+
+    /**
+     * The length of the input, excluding the terminal character.
+     */
+    val inputLength: Int
+        get() = textLength - 1
+
+    /**
+     * Finds the offsets of the given query string within the input string by exploiting the built
+     * tree.
+     */
+    fun offsetsOf(queryString: String): SuffixOffsets = lock.read {
+        val memory = openMemory()
+        val node = nodeMatching(memory, queryString)
+        if (node == NONE) {
+            SuffixOffsets.EMPTY
+        } else {
+            // The offsets are copied onto the heap, because the memory may be freed after we
+            // return them.
+            val firstLeaf = valueOf(memory, FIRST_LEAF, node)
+            val offsets = IntArray(valueOf(memory, LAST_LEAF, node) - firstLeaf)
+            for (i in offsets.indices) {
+                offsets[i] = memory.getInt(leafSuffixesByteOffset + (firstLeaf + i) * Int.SIZE_BYTES)
+            }
+            SuffixOffsets(offsets, 0, offsets.size)
+        }
+    }
+
+    /**
+     * Counts the occurrences of the given query string within the input string, without
+     * collecting their offsets.
+     */
+    fun countOf(queryString: String): Int = lock.read {
+        val memory = openMemory()
+        val node = nodeMatching(memory, queryString)
+        if (node == NONE) {
+            0
+        } else {
+            valueOf(memory, LAST_LEAF, node) - valueOf(memory, FIRST_LEAF, node)
+        }
+    }
+
+    /**
+     * Copies the characters of the input from [startIndex] (inclusive) to [endIndex] (exclusive)
+     * onto the heap.
+     */
+    fun substring(startIndex: Int, endIndex: Int): String = lock.read {
+        val memory = openMemory()
+        val chars = CharArray(endIndex - startIndex)
+        for (i in chars.indices) {
+            chars[i] = charAt(memory, startIndex + i)
+        }
+        String(chars)
+    }
+
+    /**
+     * Frees the memory held by the tree. Calling this more than once has no further effect.
+     */
+    override fun close() = lock.write {
+        val memory = memory ?: return@write
+        this.memory = null
+        DirectMemory.free(memory)
+    }
+
+    private fun openMemory(): ByteBuffer =
+        memory ?: throw IllegalStateException("This suffix tree has been closed")
+
+    private fun allocate(tree: CompactSuffixTree): ByteBuffer {
+        val sizeInBytes = ARRAYS.toLong() * nodeCount * Int.SIZE_BYTES +
+                textLength.toLong() * (Int.SIZE_BYTES + Char.SIZE_BYTES)
+        if (sizeInBytes > Int.MAX_VALUE) {
+            throw IllegalArgumentException(
+                "A suffix tree for an input of ${textLength - 1} chars needs $sizeInBytes " +
+                        "bytes, which is more than can be held in one direct buffer"
+            )
+        }
+        val memory = ByteBuffer.allocateDirect(sizeInBytes.toInt()).order(ByteOrder.nativeOrder())
+        for (node in 0 until nodeCount) {
+            memory.putInt(byteOffset(START, node), tree.start[node])
+            // Leaf edges run to the end of the text, which is now fixed.
+            memory.putInt(byteOffset(END, node), minOf(tree.end[node], textLength))
+            memory.putInt(byteOffset(FIRST_CHILD, node), tree.firstChild[node])
+            memory.putInt(byteOffset(NEXT_SIBLING, node), tree.nextSibling[node])
+            memory.putInt(byteOffset(FIRST_LEAF, node), tree.firstLeaf[node])
+            memory.putInt(byteOffset(LAST_LEAF, node), tree.lastLeaf[node])
+        }
+        for (i in 0 until textLength) {
+            memory.putInt(leafSuffixesByteOffset + i * Int.SIZE_BYTES, tree.leafSuffixes[i])
+        }
+        for (i in 0 until textLength) {
+            memory.putChar(textByteOffset + i * Char.SIZE_BYTES, tree.text[i])
+        }
+        return memory
+    }
+
+    private fun byteOffset(array: Int, node: Int): Int =
+        (array * nodeCount + node) * Int.SIZE_BYTES
+
+    private fun valueOf(memory: ByteBuffer, array: Int, node: Int): Int =
+        memory.getInt(byteOffset(array, node))
+
+    private fun charAt(memory: ByteBuffer, i: Int): Char =
+        memory.getChar(textByteOffset + i * Char.SIZE_BYTES)
+
+    private fun childStartingWith(memory: ByteBuffer, node: Int, c: Char): Int {
+        var child = valueOf(memory, FIRST_CHILD, node)
+        while (child != NONE && charAt(memory, valueOf(memory, START, child)) != c) {
+            child = valueOf(memory, NEXT_SIBLING, child)
+        }
+        return child
+    }
+
+    private fun nodeMatching(memory: ByteBuffer, queryString: String): Int {
+        var i = 0
+        var node = ROOT
+        while (i < queryString.length) {
+            node = childStartingWith(memory, node, queryString[i])
+            if (node == NONE) {
+                return NONE
+            }
+            val edgeStart = valueOf(memory, START, node)
+            val edgeLength = valueOf(memory, END, node) - edgeStart
+            val charsToCompare = minOf(edgeLength, queryString.length - i)
+            for (j in 0 until charsToCompare) {
+                if (queryString[i + j] != charAt(memory, edgeStart + j)) {
+                    return NONE
+                }
+            }
+            i += charsToCompare
+        }
+        return node
+    }
+}
@@ -0,0 +1,57 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.LineBreakIndex
+import com.rrm.fulltextsearch.index.QGramSummary
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+
+/**
+ * This type of IndexedFile keeps both its suffix tree and the text of the file off the Java heap,
+ * in an [OffHeapSuffixTree]. The memory is released when the file is closed.
+ */
+class OffHeapSuffixTreeIndexedFile(
+    private val relativePath: String, fileText: String
+) : IndexedFile {
+
+    private val suffixTree: OffHeapSuffixTree = OffHeapSuffixTree.ukkonenConstruction(fileText)
+    private val lineBreaks = LineBreakIndex.of(fileText)
+    private val summary = QGramSummary.of(fileText)
+
+    override fun relativePath(): String = relativePath
+
+    override fun textLength(): Int = suffixTree.inputLength
+
+    override fun mayContain(queryString: String): Boolean = summary.mayContain(queryString)
+
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return listOf()
+        }
+        return suffixTree.offsetsOf(queryString).map { QueryMatch(relativePath, it, fileId) }
+    }
+
+    override fun queryOffsets(queryString: String): IntArray {
+        if (queryString.isEmpty()) {
+            return IntArray(0)
+        }
+        return suffixTree.offsetsOf(queryString).toIntArray()
+    }
+
+    override fun count(queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        return suffixTree.countOf(queryString)
+    }
+
+    override fun getLineOfChar(charOffset: Int): String =
+        suffixTree.substring(lineBreaks.lineStartOf(charOffset), lineBreaks.lineEndOf(charOffset))
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine =
+        lineBreaks.fileLineOf(charOffset, suffixTree::substring)
+
+    override fun close() {
+        suffixTree.close()
+    }
+}
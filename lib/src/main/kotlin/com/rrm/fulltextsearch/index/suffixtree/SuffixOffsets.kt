@@ -0,0 +1,41 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+/**
+ * The offsets at which a query string occurs in the input of a suffix tree.
+ *
+ * Once a suffix tree is built, its leaves are numbered in depth-first order, and their suffixes are
+ * written into one array in that order. The leaves under any node then occupy a contiguous range of
+ * that array, so the result of a query is just a read-only view of a slice of it. Nothing is copied
+ * or boxed until the offsets are iterated over. The matches in a suffix array are a contiguous
+ * range of it in just the same way.
+ */
+class SuffixOffsets internal constructor(
+    private val leafSuffixes: IntArray,
+    private val fromIndex: Int,
+    private val toIndex: Int
+) : AbstractSet<Int>() {
+    override val size: Int
+        get() = toIndex - fromIndex
+
+    override fun iterator(): Iterator<Int> = object : IntIterator() {
+        private var i = fromIndex
+
+        override fun hasNext(): Boolean = i < toIndex
+
+        override fun nextInt(): Int {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            return leafSuffixes[i++]
+        }
+    }
+
+    /**
+     * @return A copy of the offsets, in no particular order.
+     */
+    fun toIntArray(): IntArray = leafSuffixes.copyOfRange(fromIndex, toIndex)
+
+    companion object {
+        val EMPTY = SuffixOffsets(IntArray(0), 0, 0)
+    }
+}
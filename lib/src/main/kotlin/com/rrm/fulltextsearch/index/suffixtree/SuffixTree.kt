@@ -1,18 +1,38 @@
 package com.rrm.fulltextsearch.index.suffixtree
 
 
-class SuffixTree {
-    private var currentlyInsertedInput = ""
+/**
+ * @param expectedInputLength The number of characters that we expect to add to the tree. The
+ * buffer holding the inserted input grows as required, so this is only a sizing hint which saves
+ * the buffer from being copied while it grows.
+ */
+class SuffixTree(expectedInputLength: Int = 16) {
+    // The characters whose suffixes are present in the tree. Only the first
+    // `currentlyInsertedInputLength` characters of the buffer are meaningful. We append to this
+    // buffer instead of appending to a String, because appending to a String copies the whole of
+    // the input for every added character, which makes the construction quadratic.
+    private var currentlyInsertedInput = CharArray(maxOf(expectedInputLength, 1))
+    private var currentlyInsertedInputLength = 0
     private var remainingSuffixes = 0
 
     private val rootNode = RootNode()
     private val activePoint = ActivePoint()
 
+    // The suffixes of the leaves, in depth-first order, so that the leaves under each node occupy
+    // the range [Node.firstLeaf, Node.lastLeaf) of this array. This is null when characters have
+    // been added since the leaves were last numbered.
+    @Volatile
+    private var leafSuffixes: IntArray? = null
+
     companion object {
-        fun ukkonenConstruction(input: String): SuffixTree {
-            val suffixTree = SuffixTree()
-            input.forEach { suffixTree.addChar(it) }
+        fun ukkonenConstruction(input: CharSequence): SuffixTree {
+            // We leave room for the terminal character added during canonization.
+            val suffixTree = SuffixTree(expectedInputLength = input.length + 1)
+            for (i in input.indices) {
+                suffixTree.addChar(input[i])
+            }
             suffixTree.canonize()
+            suffixTree.numberLeaves()
             return suffixTree
         }
     }
@@ -20,7 +40,11 @@ class SuffixTree {
     fun addChar(c: Char) {
         // Add the character to the string of characters whose suffixes are present in the tree
         // already.
-        currentlyInsertedInput += c
+        if (currentlyInsertedInputLength == currentlyInsertedInput.size) {
+            currentlyInsertedInput = currentlyInsertedInput.copyOf(currentlyInsertedInput.size * 2)
+        }
+        currentlyInsertedInput[currentlyInsertedInputLength++] = c
+        leafSuffixes = null
 
         // There is now an additional suffix which is not yet explicit in the tree, so we increment
         // our counter for the number of remaining suffixes.
@@ -36,10 +60,24 @@ class SuffixTree {
      * Finds the offsets of the given query string within the input string by exploiting the built
      * tree.
      */
-    fun offsetsOf(queryString: String): Set<Int> {
+    fun offsetsOf(queryString: String): SuffixOffsets {
         return rootNode.offsetsOf(queryString)
     }
 
+    /**
+     * Counts the occurrences of the given query string within the input string, without
+     * collecting their offsets.
+     */
+    fun countOf(queryString: String): Int {
+        return rootNode.countOf(queryString)
+    }
+
+    /**
+     * @return The locus of the empty string, from which a query string can be followed one char at
+     * a time.
+     */
+    fun rootLocus(): Locus = Locus(rootNode, 0)
+
     /**
      * This converts the implicit suffix tree into a canonical suffix tree by adding a character
      * that doesn't appear elsewhere in the input.
@@ -48,10 +86,82 @@ class SuffixTree {
         addChar('\u0000')
     }
 
+    /**
+     * Numbers the leaves of the tree in depth-first order, and records the range of leaf numbers
+     * under each node. We traverse the tree using an explicit stack, because the tree can be as
+     * deep as the input is long.
+     */
+    @Synchronized
+    private fun numberLeaves(): IntArray {
+        leafSuffixes?.let { return it }
+
+        // There is at most one leaf per suffix.
+        val numberedLeafSuffixes = IntArray(currentlyInsertedInputLength)
+        var nextLeaf = 0
+        val stack = mutableListOf<Node>(rootNode)
+        rootNode.firstLeaf = UNNUMBERED
+        while (stack.isNotEmpty()) {
+            val node = stack.last()
+            if (node.firstLeaf != UNNUMBERED) {
+                // We've numbered all the leaves under this node, so we're on our way back up.
+                node.lastLeaf = nextLeaf
+                stack.removeAt(stack.size - 1)
+                continue
+            }
+
+            node.firstLeaf = nextLeaf
+            if (node.edges.isEmpty() && node != rootNode) {
+                numberedLeafSuffixes[nextLeaf++] = node.suffix
+                node.lastLeaf = nextLeaf
+                stack.removeAt(stack.size - 1)
+            } else {
+                node.edges.forEach { _, child ->
+                    child.firstLeaf = UNNUMBERED
+                    stack.add(child)
+                }
+            }
+        }
+        leafSuffixes = numberedLeafSuffixes
+        return numberedLeafSuffixes
+    }
+
     override fun toString(): String {
         return "SuffixTree(rootNode={\n$rootNode\n})"
     }
 
+    /**
+     * The point in the tree reached by following a query string down from the root. The point is
+     * [depthOnEdge] chars along the edge leading into [node], and the suffixes prefixed by the
+     * query string are the leaves under that node. A locus is never changed, so a caller can keep
+     * the locus of each prefix of a query string, e.g. to go back when a char is deleted.
+     */
+    inner class Locus internal constructor(private val node: Node, private val depthOnEdge: Int) {
+        /**
+         * Takes one step down the tree, rather than following the whole of the longer query string
+         * from the root.
+         *
+         * @return The locus of the query string followed by c, or null if that doesn't occur in
+         * the input.
+         */
+        fun extendedBy(c: Char): Locus? {
+            if (depthOnEdge < node.edgeLength()) {
+                return if (currentlyInsertedInput[node.start + depthOnEdge] == c) Locus(node, depthOnEdge + 1) else null
+            }
+            return Locus(node.edges[c] ?: return null, 1)
+        }
+
+        /**
+         * Finds the same offsets as [offsetsOf] would for the query string. Like it, this finds
+         * nothing for the empty query string at the root.
+         */
+        fun offsets(): SuffixOffsets {
+            if (node == rootNode) {
+                return SuffixOffsets.EMPTY
+            }
+            return SuffixOffsets(leafSuffixes ?: numberLeaves(), node.firstLeaf, node.lastLeaf)
+        }
+    }
+
     inner class ActivePoint {
         private var activeNode: Node = rootNode
         private var activeLength = 0
@@ -85,7 +195,7 @@ class SuffixTree {
                     // When we insert a node from root, we decrement our active length, and pull our
                     // active edge forwards to point at the start of the next suffix we're adding.
                     activeLength--
-                    activeEdge = currentlyInsertedInput.length - remainingSuffixes
+                    activeEdge = currentlyInsertedInputLength - remainingSuffixes
                 } else {
                     // When we insert a node from an internal node, we follow its suffix link if it has
                     // one. The default suffix link for any node is root.
@@ -98,10 +208,10 @@ class SuffixTree {
          * @param c The character we're adding to the tree in the current phase.
          * @return Which suffix extension rule was applied in order to add the next suffix.
          */
-        private fun addSuffix(c: Char): SuffixExtensionRule {
+        private tailrec fun addSuffix(c: Char): SuffixExtensionRule {
             if (activeLength == 0) {
                 // If we're at a node, set our active edge at the last added character in the text.
-                activeEdge = currentlyInsertedInput.length - 1
+                activeEdge = currentlyInsertedInputLength - 1
             }
 
             val activeEdgeLeadingChar = currentlyInsertedInput[activeEdge]
@@ -117,7 +227,8 @@ class SuffixTree {
                 // If the reference to the active point is non-canonical, then canonize it by
                 // recursively stepping through the tree, and then go to the next extension of the
                 // current phase so that we can do all our steps from the basis of a canonical
-                // reference to the active point.
+                // reference to the active point. The function is tail recursive, so this doesn't
+                // grow the stack, however many nodes we step through.
                 val edgeLength = nextNode.edgeLength()
                 if (activeLength >= edgeLength) {
                     activeEdge += edgeLength
@@ -156,10 +267,14 @@ class SuffixTree {
     open inner class Node(var start: Int, private var end: Int) {
         private var suffixLink: Node? = null
 
-        val suffix = currentlyInsertedInput.length - remainingSuffixes
-        var edges = mutableMapOf<Char, Node>()
+        // The range of leaf numbers under this node, as assigned by numberLeaves.
+        var firstLeaf = 0
+        var lastLeaf = 0
 
-        fun edgeLength(): Int = minOf(end, currentlyInsertedInput.length) - start
+        val suffix = currentlyInsertedInputLength - remainingSuffixes
+        val edges = ChildEdges<Node>()
+
+        fun edgeLength(): Int = minOf(end, currentlyInsertedInputLength) - start
 
         fun suffixLink(): Node = suffixLink ?: rootNode
 
@@ -168,7 +283,7 @@ class SuffixTree {
         }
 
         fun edgeLabel(): String =
-            currentlyInsertedInput.substring(start, minOf(end, currentlyInsertedInput.length))
+            String(currentlyInsertedInput, start, edgeLength())
 
         override fun toString(): String {
             return toString(1)
@@ -177,9 +292,9 @@ class SuffixTree {
         open fun toString(indentationLevel: Int): String {
             return "Node(start=$start, end=$end, suffix=$suffix, hasLink?=${suffixLink != null}, label=${edgeLabel()}, " +
                     "edges:${
-                        edges.map {
-                            "\n${"\t".repeat(indentationLevel)}'${it.key}'=${
-                                it.value.toString(
+                        edges.map { c, child ->
+                            "\n${"\t".repeat(indentationLevel)}'$c'=${
+                                child.toString(
                                     indentationLevel + 1
                                 )
                             }"
@@ -188,7 +303,7 @@ class SuffixTree {
         }
     }
 
-    inner class LeafNode : Node(currentlyInsertedInput.length - 1, Int.MAX_VALUE) {
+    inner class LeafNode : Node(currentlyInsertedInputLength - 1, Int.MAX_VALUE) {
         override fun toString(): String {
             return "LeafNode(start=$start, end=end, suffix=$suffix, label=${edgeLabel()})"
         }
@@ -199,13 +314,34 @@ class SuffixTree {
     }
 
     inner class RootNode : Node(-1, -1) {
-        fun offsetsOf(queryString: String): Set<Int> {
+        fun offsetsOf(queryString: String): SuffixOffsets {
+            val node = nodeMatching(queryString) ?: return SuffixOffsets.EMPTY
+            return suffixesUnderSubtreeRootedAt(node)
+        }
+
+        /**
+         * The number of leaves under a node is the size of its leaf range, so counting the matches
+         * costs no more than finding the node they're under.
+         */
+        fun countOf(queryString: String): Int {
+            val node = nodeMatching(queryString) ?: return 0
+            if (leafSuffixes == null) {
+                numberLeaves()
+            }
+            return node.lastLeaf - node.firstLeaf
+        }
+
+        /**
+         * @return The node whose subtree holds the suffixes prefixed by the query string, or null
+         * if the query string doesn't occur in the input.
+         */
+        private fun nodeMatching(queryString: String): Node? {
             var i = 0
             var node: Node = this
             while (i < queryString.length) {
                 // We try to follow the edge to the next internal node. If there is no such edge, then
-                // there are no matches and we return the empty set.
-                node = (node.edges[queryString[i]] ?: return setOf())
+                // there are no matches.
+                node = (node.edges[queryString[i]] ?: return null)
 
                 // If the edge we just followed is longer than the remainder of the query string, then
                 // we get matches only if the edge label starts with the remainder of the query string.
@@ -214,11 +350,11 @@ class SuffixTree {
                     var j = 0
                     while (j < queryString.length - i) {
                         if (queryString[i + j] != currentlyInsertedInput[node.start + j]) {
-                            return setOf()
+                            return null
                         }
                         j++
                     }
-                    return suffixesUnderSubtreeRootedAt(node)
+                    return node
                 }
 
                 // If the edge we just followed doesn't have an edge label matching the query string,
@@ -227,7 +363,7 @@ class SuffixTree {
                 var k = 0
                 while (k < node.edgeLength()) {
                     if (queryString[i + k] != currentlyInsertedInput[node.start + k]) {
-                        return setOf()
+                        return null
                     }
                     k++
                 }
@@ -239,24 +375,22 @@ class SuffixTree {
             // If we make it out of the loop, then we have consumed the full query string by traversing
             // edges from the root. This means that all the suffixes stored within the current subtree
             // will be prefixed by the query string.
-            return suffixesUnderSubtreeRootedAt(node)
+            return node
         }
 
-        private fun suffixesUnderSubtreeRootedAt(node: Node): Set<Int> {
-            return if (node.edges.isEmpty()) {
-                setOf(node.suffix)
-            } else {
-                node.edges.flatMap { suffixesUnderSubtreeRootedAt(it.value) }.toSet()
-            }
+        private fun suffixesUnderSubtreeRootedAt(node: Node): SuffixOffsets {
+            return SuffixOffsets(leafSuffixes ?: numberLeaves(), node.firstLeaf, node.lastLeaf)
         }
 
         override fun toString(): String {
-            return "RootNode(edges:${edges.map { "\n\t'${it.key}'=${it.value.toString(2)}" }})"
+            return "RootNode(edges:${edges.map { c, child -> "\n\t'$c'=${child.toString(2)}" }})"
         }
     }
 }
 
-private enum class SuffixExtensionRule {
+private const val UNNUMBERED = -1
+
+internal enum class SuffixExtensionRule {
     /**
      * Rule one extensions happen in the first extension of every phase, when the leaf nodes are
      * implicitly extended by the addition of the next character. I have included it here for my
@@ -1,6 +1,10 @@
 package com.rrm.fulltextsearch.index.suffixtree
 
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.LineBreakIndex
+import com.rrm.fulltextsearch.index.QGramSummary
+import com.rrm.fulltextsearch.index.PrefixCursor
+import com.rrm.fulltextsearch.search.FileLine
 import com.rrm.fulltextsearch.search.QueryMatch
 
 class SuffixTreeIndexedFile(
@@ -8,33 +12,58 @@ class SuffixTreeIndexedFile(
 ) : IndexedFile {
 
     private val suffixTree: SuffixTree = SuffixTree.ukkonenConstruction(fileText)
-    private val lineBreakOffsets = suffixTree.offsetsOf("\n")
+    private val lineBreaks = LineBreakIndex.of(fileText)
+    private val summary = QGramSummary.of(fileText)
 
     override fun relativePath(): String = relativePath
 
-    override fun query(queryString: String): List<QueryMatch> {
+    override fun textLength(): Int = fileText.length
+
+    override fun mayContain(queryString: String): Boolean = summary.mayContain(queryString)
+
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> {
         if (queryString.isEmpty()) {
             return listOf()
         }
-        return suffixTree.offsetsOf(queryString).map { QueryMatch(relativePath, it) }
+        return suffixTree.offsetsOf(queryString).map { QueryMatch(relativePath, it, fileId) }
     }
 
-    // Current Approach:
-    // - Find the smallest line break offset > char offset
-    // - Find the greatest line break offset < char offset
-    // Potential improvement:
-    // - Sort the line break offsets and store them in an AVL tree, so they can be exploited as in
-    //   database cracking: https://stratos.seas.harvard.edu/files/IKM_CIDR07.pdf
-    override fun getLineOfChar(charOffset: Int): String {
-        var startOfLineOffset = -1
-        var endOfLineOffset = fileText.length
-        for (lineBreakOffset in lineBreakOffsets) {
-            if (lineBreakOffset in (charOffset + 1) until endOfLineOffset) {
-                endOfLineOffset = lineBreakOffset
-            } else if (lineBreakOffset in (startOfLineOffset + 1) until charOffset) {
-                startOfLineOffset = lineBreakOffset
-            }
+    override fun lazyQuery(queryString: String, fileId: Int): Sequence<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return emptySequence()
         }
-        return fileText.substring(startOfLineOffset + 1, endOfLineOffset)
+        return suffixTree.offsetsOf(queryString).asSequence().map { QueryMatch(relativePath, it, fileId) }
+    }
+
+    override fun queryOffsets(queryString: String): IntArray {
+        if (queryString.isEmpty()) {
+            return IntArray(0)
+        }
+        return suffixTree.offsetsOf(queryString).toIntArray()
+    }
+
+    override fun count(queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        return suffixTree.countOf(queryString)
+    }
+
+    /**
+     * The cursor keeps the locus of the query string in the suffix tree, so extending the query
+     * string by a char takes one step down the tree, however long the query string already is.
+     */
+    override fun prefixCursor(): PrefixCursor = LocusCursor(suffixTree.rootLocus())
+
+    override fun getLineOfChar(charOffset: Int): String =
+        fileText.substring(lineBreaks.lineStartOf(charOffset), lineBreaks.lineEndOf(charOffset))
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine =
+        lineBreaks.fileLineOf(charOffset, fileText::substring)
+
+    private class LocusCursor(private val locus: SuffixTree.Locus) : PrefixCursor {
+        override fun extendedBy(c: Char): PrefixCursor? = locus.extendedBy(c)?.let { LocusCursor(it) }
+
+        override fun offsets(): IntArray = locus.offsets().toIntArray()
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,241 @@
+package com.rrm.fulltextsearch.index.trigram
+
+import com.rrm.fulltextsearch.index.DirectoryIndex
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.search.PartialQueryResults
+import com.rrm.fulltextsearch.search.QueryMatch
+import com.rrm.fulltextsearch.search.QueryResults
+
+/**
+ * An inverted index from each trigram (three adjacent chars) in the files of a directory to the
+ * ids of the files which contain it. A file can only contain a query string if it contains every
+ * trigram of it, so a query intersects the posting lists of its trigrams to find the candidate
+ * files, and then verifies each candidate by searching its text.
+ *
+ * This keeps the texts of the files, plus about one int per distinct trigram of each file, which
+ * is far less than a suffix tree per file. In exchange, a query costs a scan of each candidate's
+ * text, and a query string shorter than a trigram can't be narrowed down at all, so every file is
+ * a candidate for it.
+ */
+class TrigramIndex private constructor(
+    private val relativePaths: List<String>,
+    private val fileTexts: List<String>
+) : DirectoryIndex {
+    // The distinct trigrams of all the files, in ascending order. The ids of the files containing
+    // trigrams[i] are postings[postingStarts[i]] until postings[postingStarts[i + 1]], in
+    // ascending order.
+    private val trigrams: LongArray
+    private val postingStarts: IntArray
+    private val postings: IntArray
+
+    init {
+        val trigramsOfFiles = fileTexts.map { distinctTrigramsOf(it) }
+        trigrams = distinct(LongArray(trigramsOfFiles.sumOf { it.size }).also { all ->
+            var size = 0
+            for (trigramsOfFile in trigramsOfFiles) {
+                trigramsOfFile.copyInto(all, size)
+                size += trigramsOfFile.size
+            }
+        })
+
+        postingStarts = IntArray(trigrams.size + 1)
+        for (trigramsOfFile in trigramsOfFiles) {
+            for (trigram in trigramsOfFile) {
+                postingStarts[trigrams.binarySearch(trigram) + 1]++
+            }
+        }
+        for (i in trigrams.indices) {
+            postingStarts[i + 1] += postingStarts[i]
+        }
+
+        // The files are added in order of their ids, so each posting list comes out sorted.
+        postings = IntArray(postingStarts[trigrams.size])
+        val filled = postingStarts.copyOf(trigrams.size)
+        for ((fileId, trigramsOfFile) in trigramsOfFiles.withIndex()) {
+            for (trigram in trigramsOfFile) {
+                postings[filled[trigrams.binarySearch(trigram)]++] = fileId
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * @param files The relative path and text of each file in the directory.
+         */
+        fun construct(files: List<Pair<String, String>>): TrigramIndex =
+            TrigramIndex(files.map { it.first }, files.map { it.second })
+
+        private fun trigramAt(text: CharSequence, i: Int): Long =
+            (text[i].code.toLong() shl 32) or (text[i + 1].code.toLong() shl 16) or text[i + 2].code.toLong()
+
+        private fun distinctTrigramsOf(text: CharSequence): LongArray =
+            distinct(LongArray(maxOf(text.length - 2, 0)) { trigramAt(text, it) })
+
+        private fun distinct(values: LongArray): LongArray {
+            values.sort()
+            var size = 0
+            for (i in values.indices) {
+                if (size == 0 || values[i] != values[size - 1]) {
+                    values[size++] = values[i]
+                }
+            }
+            return values.copyOf(size)
+        }
+    }
+
+    override val fileCount: Int
+        get() = relativePaths.size
+
+    fun relativePath(fileId: Int): String = relativePaths[fileId]
+
+    internal fun fileText(fileId: Int): String = fileTexts[fileId]
+
+    /**
+     * Estimates the memory taken by the index, excluding the texts of the files.
+     */
+    fun sizeInBytes(): Long = 8L * trigrams.size + 4L * (postingStarts.size + postings.size)
+
+    override fun indexedFiles(): List<IndexedFile> = relativePaths.indices.map { TrigramIndexedFile(this, it) }
+
+    override fun queryResults(queryString: String): QueryResults {
+        if (queryString.isEmpty()) {
+            return QueryResults.EMPTY
+        }
+        val candidates = candidateFiles(queryString)
+        val builder = QueryResults.Builder(candidates.size)
+        for (fileId in candidates) {
+            builder.add(fileId, relativePaths[fileId], offsetsInFile(fileId, queryString))
+        }
+        return builder.build()
+    }
+
+    /**
+     * The deadline is checked before each candidate file is verified, since the scans of their
+     * texts are where the time goes. The files ruled out by the posting lists count as searched.
+     */
+    override fun queryResults(queryString: String, deadlineNanos: Long): PartialQueryResults {
+        if (queryString.isEmpty()) {
+            return PartialQueryResults(QueryResults.EMPTY, fileCount, 0)
+        }
+        val candidates = candidateFiles(queryString)
+        val builder = QueryResults.Builder(candidates.size)
+        var verified = 0
+        while (verified < candidates.size && System.nanoTime() - deadlineNanos < 0) {
+            val fileId = candidates[verified++]
+            builder.add(fileId, relativePaths[fileId], offsetsInFile(fileId, queryString))
+        }
+        val filesSkipped = candidates.size - verified
+        return PartialQueryResults(builder.build(), fileCount - filesSkipped, filesSkipped)
+    }
+
+    override fun lazyQuery(queryString: String): Sequence<QueryMatch> {
+        if (queryString.isEmpty()) {
+            return emptySequence()
+        }
+        return candidateFiles(queryString).asSequence().flatMap { fileId ->
+            val fileText = fileTexts[fileId]
+            generateSequence(fileText.indexOf(queryString).takeIf { it != -1 }) {
+                fileText.indexOf(queryString, it + 1).takeIf { offset -> offset != -1 }
+            }.map { QueryMatch(relativePaths[fileId], it, fileId) }
+        }
+    }
+
+    override fun count(queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        return candidateFiles(queryString).sumOf { countInFile(it, queryString) }
+    }
+
+    override fun filesContaining(queryString: String): Set<String> {
+        if (queryString.isEmpty()) {
+            return setOf()
+        }
+        return candidateFiles(queryString)
+            .filter { fileTexts[it].contains(queryString) }
+            .mapTo(mutableSetOf()) { relativePaths[it] }
+    }
+
+    /**
+     * @return False if the file doesn't contain every trigram of the query string, in which case
+     * it can't contain the query string, or true if it might.
+     */
+    fun mayContainInFile(fileId: Int, queryString: String): Boolean {
+        for (i in 0 until queryString.length - 2) {
+            val trigram = trigrams.binarySearch(trigramAt(queryString, i))
+            if (trigram < 0 || postings.binarySearch(fileId, postingStarts[trigram], postingStarts[trigram + 1]) < 0) {
+                return false
+            }
+        }
+        return true
+    }
+
+    /**
+     * Finds the offsets of the query string in one file, including overlapping ones, by scanning
+     * its text.
+     */
+    fun offsetsInFile(fileId: Int, queryString: String): IntArray {
+        if (queryString.isEmpty()) {
+            return IntArray(0)
+        }
+        val fileText = fileTexts[fileId]
+        var offsets = IntArray(4)
+        var size = 0
+        var i = fileText.indexOf(queryString)
+        while (i != -1) {
+            if (size == offsets.size) {
+                offsets = offsets.copyOf(size * 2)
+            }
+            offsets[size++] = i
+            i = fileText.indexOf(queryString, i + 1)
+        }
+        return offsets.copyOf(size)
+    }
+
+    fun countInFile(fileId: Int, queryString: String): Int {
+        if (queryString.isEmpty()) {
+            return 0
+        }
+        val fileText = fileTexts[fileId]
+        var count = 0
+        var i = fileText.indexOf(queryString)
+        while (i != -1) {
+            count++
+            i = fileText.indexOf(queryString, i + 1)
+        }
+        return count
+    }
+
+    /**
+     * Intersects the posting lists of the trigrams of the query string, starting with the
+     * shortest, so the work done is bounded by the rarest trigram.
+     *
+     * @return The ids of the files which contain every trigram of the query string, in ascending
+     * order.
+     */
+    private fun candidateFiles(queryString: String): IntArray {
+        if (queryString.length < 3) {
+            return IntArray(relativePaths.size) { it }
+        }
+        val queryTrigrams = distinctTrigramsOf(queryString)
+        val postingLists = queryTrigrams.map { trigrams.binarySearch(it) }
+        if (postingLists.any { it < 0 }) {
+            return IntArray(0)
+        }
+        val shortestFirst = postingLists.sortedBy { postingStarts[it + 1] - postingStarts[it] }
+        var candidates = postings.copyOfRange(postingStarts[shortestFirst[0]], postingStarts[shortestFirst[0] + 1])
+        for (trigram in shortestFirst.drop(1)) {
+            var size = 0
+            for (fileId in candidates) {
+                if (postings.binarySearch(fileId, postingStarts[trigram], postingStarts[trigram + 1]) >= 0) {
+                    candidates[size++] = fileId
+                }
+            }
+            candidates = candidates.copyOf(size)
+            if (size == 0) {
+                break
+            }
+        }
+        return candidates
+    }
+}
@@ -0,0 +1,46 @@
+package com.rrm.fulltextsearch.index.trigram
+
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.LineBreakIndex
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+
+/**
+ * This type of IndexedFile is a view of one of the files in a [TrigramIndex]. It uses the posting
+ * lists of the index to rule out query strings, and otherwise scans its text.
+ */
+internal class TrigramIndexedFile(
+    private val trigramIndex: TrigramIndex,
+    private val fileIdInIndex: Int
+) : IndexedFile {
+    // Lines are only looked up for the matches which are shown, so this is built when first needed.
+    private val lineBreaks: LineBreakIndex by lazy { LineBreakIndex.of(trigramIndex.fileText(fileIdInIndex)) }
+
+    override fun relativePath(): String = trigramIndex.relativePath(fileIdInIndex)
+
+    override fun textLength(): Int = trigramIndex.fileText(fileIdInIndex).length
+
+    override fun mayContain(queryString: String): Boolean = trigramIndex.mayContainInFile(fileIdInIndex, queryString)
+
+    override fun query(queryString: String, fileId: Int): List<QueryMatch> =
+        queryOffsets(queryString).map { QueryMatch(relativePath(), it, fileId) }
+
+    override fun queryOffsets(queryString: String): IntArray {
+        if (!mayContain(queryString)) {
+            return IntArray(0)
+        }
+        return trigramIndex.offsetsInFile(fileIdInIndex, queryString)
+    }
+
+    override fun count(queryString: String): Int {
+        if (!mayContain(queryString)) {
+            return 0
+        }
+        return trigramIndex.countInFile(fileIdInIndex, queryString)
+    }
+
+    override fun getLineOfChar(charOffset: Int): String = getFileLineOfChar(charOffset).text
+
+    override fun getFileLineOfChar(charOffset: Int): FileLine =
+        lineBreaks.fileLineOf(charOffset, trigramIndex.fileText(fileIdInIndex)::substring)
+}
@@ -0,0 +1,22 @@
+package com.rrm.fulltextsearch.indexer
+
+import com.rrm.fulltextsearch.index.DirectoryIndex
+import com.rrm.fulltextsearch.index.corpus.CorpusIndex
+import com.rrm.fulltextsearch.index.trigram.TrigramIndex
+
+/**
+ * Chooses the kind of [DirectoryIndex] to build over all the files of a directory, in the same way
+ * as an [IndexerStrategy] chooses the index to build for each file.
+ */
+fun interface DirectoryIndexStrategy {
+    /**
+     * @param files The relative path and text of each file in the directory.
+     */
+    fun buildIndexFor(files: List<Pair<String, String>>): DirectoryIndex
+
+    companion object {
+        fun alwaysUseCorpusIndex() = DirectoryIndexStrategy { CorpusIndex.construct(it) }
+
+        fun alwaysUseTrigramIndex() = DirectoryIndexStrategy { TrigramIndex.construct(it) }
+    }
+}
@@ -1,26 +1,93 @@
 package com.rrm.fulltextsearch.indexer
 
 import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.filesystem.FileTextReader
+import com.rrm.fulltextsearch.filesystem.FileTextReaderPool
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.fmindex.FmIndexIndexedFile
 import com.rrm.fulltextsearch.index.naive.NaiveIndexedFile
 import com.rrm.fulltextsearch.index.none.NoSearchIndexedFile
+import com.rrm.fulltextsearch.index.suffixarray.SuffixArrayIndexedFile
+import com.rrm.fulltextsearch.index.suffixtree.CompactSuffixTreeIndexedFile
+import com.rrm.fulltextsearch.index.suffixtree.OffHeapSuffixTreeIndexedFile
 import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeIndexedFile
 import java.io.File
+import java.nio.charset.Charset
+import java.nio.charset.CodingErrorAction
 
+/**
+ * Chooses the index to build for each file of a directory, and builds it from the file's text. The
+ * indexers read the text for it, following its [indexingPolicy], which also estimates what
+ * indexing each file costs.
+ */
 fun interface IndexerStrategy {
-    fun buildIndexFor(rootDirectory: Directory, file: File): IndexedFile
+    /**
+     * @param fileText The text of the file, or null if it wasn't read, because the
+     * [indexingPolicy] doesn't index the file.
+     */
+    fun buildIndexFor(rootDirectory: Directory, file: File, fileText: String?): IndexedFile
+
+    val indexingPolicy: IndexingPolicy
+        get() = IndexingPolicy.DEFAULT
 
     companion object {
-        fun default(suffixTreeMaxCharsThreshold: Int? = 10000): IndexerStrategy =
-            IndexerStrategy { rootDirectory, file ->
-                val relativePath = rootDirectory.relativePathTo(file.path)
-                val fileExtensionsToNotIndex = setOf(".jar", ".png", ".jpg", ".jpeg")
-                if (fileExtensionsToNotIndex.any { relativePath.endsWith(it) }) {
-                    return@IndexerStrategy NoSearchIndexedFile(relativePath)
-                }
+        internal val FILE_EXTENSIONS_TO_NOT_INDEX = setOf(".jar", ".png", ".jpg", ".jpeg")
+
+        /**
+         * Roughly how much work an engine does per char of the text, relative to the others, and
+         * how many bytes per char its index takes at its peak while it's built, counting the text.
+         */
+        private class EngineProfile(val costPerChar: Int, val bytesPerChar: Int)
+
+        // Every engine is built in linear time, but those which allocate a node per char, and
+        // then chase pointers between them, do much more per char than those built from arrays.
+        // The naive index is just the text and its line breaks. The suffix array's int array takes
+        // 4 bytes per char, and about three times as much while it's sorted. The FM-index is
+        // built from a suffix array, which it then samples. A compact suffix tree has six int
+        // arrays with room for two nodes per char, and the off-heap one is copied out of a
+        // compact one. A suffix tree has two node objects per char, each with its own child map.
+        private val NAIVE_INDEX = EngineProfile(costPerChar = 1, bytesPerChar = 3)
+        private val SUFFIX_ARRAY = EngineProfile(costPerChar = 4, bytesPerChar = 16)
+        private val FM_INDEX = EngineProfile(costPerChar = 6, bytesPerChar = 16)
+        private val COMPACT_SUFFIX_TREE = EngineProfile(costPerChar = 8, bytesPerChar = 56)
+        private val OFF_HEAP_SUFFIX_TREE = EngineProfile(costPerChar = 10, bytesPerChar = 88)
+        private val SUFFIX_TREE = EngineProfile(costPerChar = 10, bytesPerChar = 200)
 
-                val fileText = file.readText()
-                if (suffixTreeMaxCharsThreshold != null && suffixTreeMaxCharsThreshold < fileText.length) {
+        /**
+         * Files up to [suffixTreeMaxCharsThreshold] chars long get a suffix tree. Bigger files get
+         * a naive index, unless [fmIndexMinCharsThreshold] is given and they are bigger than that
+         * too, in which case they get a compressed FM-index.
+         *
+         * The files are read in the given [charset], and bytes which aren't valid in it are dealt
+         * with following the [malformedInputAction], as described by [FileTextReader]. Files with
+         * one of the [FILE_EXTENSIONS_TO_NOT_INDEX], and files whose first few KB look binary, get
+         * a [NoSearchIndexedFile].
+         */
+        fun default(
+            suffixTreeMaxCharsThreshold: Int? = 100000,
+            fmIndexMinCharsThreshold: Int? = null,
+            charset: Charset = Charsets.UTF_8,
+            malformedInputAction: CodingErrorAction = CodingErrorAction.REPLACE
+        ): IndexerStrategy =
+            fromFileText(
+                skipUnindexedFiles = true,
+                charset = charset,
+                malformedInputAction = malformedInputAction,
+                // A file has at most one char per byte, so its length stands in for its number of
+                // chars when choosing its engine.
+                engineOf = { fileLength ->
+                    if (fmIndexMinCharsThreshold != null && fmIndexMinCharsThreshold < fileLength) {
+                        FM_INDEX
+                    } else if (suffixTreeMaxCharsThreshold != null && suffixTreeMaxCharsThreshold < fileLength) {
+                        NAIVE_INDEX
+                    } else {
+                        SUFFIX_TREE
+                    }
+                }
+            ) { relativePath, fileText ->
+                if (fmIndexMinCharsThreshold != null && fmIndexMinCharsThreshold < fileText.length) {
+                    FmIndexIndexedFile(relativePath, fileText)
+                } else if (suffixTreeMaxCharsThreshold != null && suffixTreeMaxCharsThreshold < fileText.length) {
                     NaiveIndexedFile(relativePath, fileText)
                 } else {
                     SuffixTreeIndexedFile(relativePath, fileText)
@@ -28,12 +95,99 @@ fun interface IndexerStrategy {
             }
 
         fun alwaysUseSuffixTreeIndex() =
-            IndexerStrategy { rootDirectory, file ->
-                SuffixTreeIndexedFile(rootDirectory.relativePathTo(file.path), file.readText())
+            fromFileText(engineOf = { SUFFIX_TREE }) { relativePath, fileText ->
+                SuffixTreeIndexedFile(relativePath, fileText)
+            }
+
+        fun alwaysUseCompactSuffixTreeIndex() =
+            fromFileText(engineOf = { COMPACT_SUFFIX_TREE }) { relativePath, fileText ->
+                CompactSuffixTreeIndexedFile(relativePath, fileText)
+            }
+
+        fun alwaysUseOffHeapSuffixTreeIndex() =
+            fromFileText(engineOf = { OFF_HEAP_SUFFIX_TREE }) { relativePath, fileText ->
+                OffHeapSuffixTreeIndexedFile(relativePath, fileText)
+            }
+
+        fun alwaysUseSuffixArrayIndex() =
+            fromFileText(engineOf = { SUFFIX_ARRAY }) { relativePath, fileText ->
+                SuffixArrayIndexedFile(relativePath, fileText)
+            }
+
+        fun alwaysUseFmIndex() =
+            fromFileText(engineOf = { FM_INDEX }) { relativePath, fileText ->
+                FmIndexIndexedFile(relativePath, fileText)
             }
 
-        fun alwaysUseNaiveIndex() = IndexerStrategy { rootDirectory, file ->
-            NaiveIndexedFile(rootDirectory.relativePathTo(file.path), file.readText())
+        fun alwaysUseNaiveIndex() =
+            fromFileText(engineOf = { NAIVE_INDEX }) { relativePath, fileText ->
+                NaiveIndexedFile(relativePath, fileText)
+            }
+
+        /**
+         * @param skipUnindexedFiles Whether files with one of the [FILE_EXTENSIONS_TO_NOT_INDEX]
+         * are given a [NoSearchIndexedFile] without being read, along with binary files, which
+         * are only read as far as it takes to tell that they're binary.
+         * @param engineOf The profile of the engine which a file of the given length gets, from
+         * which the work and memory of indexing it are estimated.
+         * @param index Builds the index of a file from its relative path and text.
+         */
+        private fun fromFileText(
+            skipUnindexedFiles: Boolean = false,
+            charset: Charset = Charsets.UTF_8,
+            malformedInputAction: CodingErrorAction = CodingErrorAction.REPLACE,
+            engineOf: (fileLength: Long) -> EngineProfile,
+            index: (relativePath: String, fileText: String) -> IndexedFile
+        ): IndexerStrategy {
+            val policy = object : IndexingPolicy {
+                override fun needsTextOf(relativePath: String): Boolean =
+                    !skipUnindexedFiles || FILE_EXTENSIONS_TO_NOT_INDEX.none { relativePath.endsWith(it) }
+
+                override fun newFileTextReaderPool(): FileTextReaderPool = FileTextReaderPool(charset, malformedInputAction)
+
+                override fun readTextOf(file: File, fileTextReaders: FileTextReaderPool): String? =
+                    fileTextReaders.withReader {
+                        if (skipUnindexedFiles) it.readTextUnlessBinary(file) else it.readText(file)
+                    }
+
+                override fun estimatedCostOf(relativePath: String, fileLength: Long): Long =
+                    if (needsTextOf(relativePath)) fileLength * engineOf(fileLength).costPerChar else 0
+
+                override fun estimatedMemoryOf(relativePath: String, fileLength: Long): Long =
+                    if (needsTextOf(relativePath)) fileLength * engineOf(fileLength).bytesPerChar else 0
+            }
+            return object : IndexerStrategy {
+                override val indexingPolicy: IndexingPolicy = policy
+
+                override fun buildIndexFor(rootDirectory: Directory, file: File, fileText: String?): IndexedFile {
+                    val relativePath = rootDirectory.relativePathTo(file.path)
+                    if (fileText == null || !policy.needsTextOf(relativePath)) {
+                        return NoSearchIndexedFile(relativePath)
+                    }
+                    return index(relativePath, fileText)
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Reads the text of the file, if the strategy's [IndexerStrategy.indexingPolicy] needs it, and
+ * builds its index.
+ *
+ * @param fileTextReaders The pool of readers of the indexing run, made by
+ * [IndexingPolicy.newFileTextReaderPool]. A file indexed on its own gets a pool of its own.
+ */
+fun IndexerStrategy.readAndBuildIndexFor(
+    rootDirectory: Directory,
+    file: File,
+    fileTextReaders: FileTextReaderPool = indexingPolicy.newFileTextReaderPool()
+): IndexedFile {
+    val relativePath = rootDirectory.relativePathTo(file.path)
+    val fileText = if (indexingPolicy.needsTextOf(relativePath)) {
+        indexingPolicy.readTextOf(file, fileTextReaders)
+    } else {
+        null
+    }
+    return buildIndexFor(rootDirectory, file, fileText)
+}
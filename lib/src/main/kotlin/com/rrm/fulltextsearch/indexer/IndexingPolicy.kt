@@ -0,0 +1,57 @@
+package com.rrm.fulltextsearch.indexer
+
+import com.rrm.fulltextsearch.filesystem.FileTextReaderPool
+import java.io.File
+
+/**
+ * How the files given to an [IndexerStrategy] are read, and how much it costs to index each of
+ * them, so that indexers can read the files for it, and schedule and budget them before they've
+ * been read. By default, every file is read as UTF-8, and its costs are estimated from its length
+ * alone.
+ */
+interface IndexingPolicy {
+    /**
+     * Whether the text of the file is needed to index it. A file whose text isn't needed is given
+     * to [IndexerStrategy.buildIndexFor] with a null text, rather than being read.
+     */
+    fun needsTextOf(relativePath: String): Boolean = true
+
+    /**
+     * Makes a pool of readers for one indexing run, which read files in the charset the strategy
+     * was made for.
+     */
+    fun newFileTextReaderPool(): FileTextReaderPool = FileTextReaderPool()
+
+    /**
+     * Reads the text of a file which is to be indexed, with a reader borrowed from the pool of the
+     * indexing run, so the reader's buffers are reused for the next file.
+     *
+     * @param fileTextReaders A pool made by [newFileTextReaderPool] for this indexing run.
+     * @return The text of the file, or null if the file isn't indexed after all, e.g. because its
+     * content turned out to be binary.
+     */
+    fun readTextOf(file: File, fileTextReaders: FileTextReaderPool): String? =
+        fileTextReaders.withReader { it.readText(file) }
+
+    /**
+     * Estimates how much work it is to index a file of the given length in bytes, so that parallel
+     * indexers can start on the most expensive files first, rather than finding them last and
+     * leaving every other worker idle while they are indexed. The estimates are only compared with
+     * each other, so their unit doesn't matter. By default, the work is the length of the file.
+     */
+    fun estimatedCostOf(relativePath: String, fileLength: Long): Long =
+        if (needsTextOf(relativePath)) fileLength else 0
+
+    /**
+     * Estimates the most memory in bytes which indexing a file of the given length in bytes takes
+     * at once, i.e. its text and the index being built from it, so that indexing pipelines can
+     * bound the memory of the files they are working on. By default, this is the text alone, at
+     * two bytes per char and at most one char per byte of the file.
+     */
+    fun estimatedMemoryOf(relativePath: String, fileLength: Long): Long =
+        if (needsTextOf(relativePath)) fileLength * 2 else 0
+
+    companion object {
+        val DEFAULT: IndexingPolicy = object : IndexingPolicy {}
+    }
+}
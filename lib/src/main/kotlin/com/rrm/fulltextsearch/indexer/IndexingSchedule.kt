@@ -0,0 +1,26 @@
+package com.rrm.fulltextsearch.indexer
+
+import com.rrm.fulltextsearch.filesystem.Directory
+import java.io.File
+
+/**
+ * Orders the files of a directory for indexing in parallel. The time taken by parallel indexing
+ * is that of the busiest worker, so a huge file which happens to be found last keeps its worker
+ * busy long after the others have run out of files. Starting with the files which are the most
+ * work to index, as estimated by the [IndexingPolicy], leaves the small files to fill in the gaps
+ * at the end, so the workers finish at about the same time.
+ */
+internal object IndexingSchedule {
+    /**
+     * Walks the whole directory, and orders its files from the most to the least work to index.
+     * Files which are estimated to be the same amount of work are kept in the order they were found.
+     */
+    fun largestFirst(directory: Directory, indexerStrategy: IndexerStrategy): List<File> {
+        val files = directory.files().toList()
+        val indexingPolicy = indexerStrategy.indexingPolicy
+        val costs = LongArray(files.size) {
+            indexingPolicy.estimatedCostOf(directory.relativePathTo(files[it].path), files[it].length())
+        }
+        return files.indices.sortedByDescending { costs[it] }.map { files[it] }
+    }
+}
@@ -0,0 +1,31 @@
+package com.rrm.fulltextsearch.indexer.async
+
+/**
+ * How much work each stage of the [ParallelAsyncIndexer] pipeline can do at once. The files
+ * waiting between stages are queued in channels of [channelCapacity], so a fast stage waits for a
+ * slow one rather than running ahead of it.
+ *
+ * @param readConcurrency The number of files which are read and decoded at once.
+ * @param buildConcurrency The number of indexes which are built at once.
+ * @param memoryBudgetInBytes The most memory which the files that have been read but not yet
+ * indexed can take, counting both their texts and the indexes being built from them, as estimated
+ * by [com.rrm.fulltextsearch.indexer.IndexingPolicy.estimatedMemoryOf]. Reading waits until there
+ * is room in the budget. The indexes which have been built are kept for the indexed directory, so
+ * they aren't counted.
+ * @param largestFirst Whether the whole directory is walked before any file is read, so the files
+ * can be indexed from the most to the least work, which keeps all the builders busy until the end.
+ * Otherwise, each file is read as soon as it's found, in whatever order that is.
+ */
+data class IndexingPipelineConfig(
+    val readConcurrency: Int = 4,
+    val buildConcurrency: Int = Runtime.getRuntime().availableProcessors(),
+    val channelCapacity: Int = 64,
+    val memoryBudgetInBytes: Long = 256L * 1024 * 1024,
+    val largestFirst: Boolean = true
+) {
+    init {
+        require(readConcurrency > 0) { "The read concurrency must be positive, but was $readConcurrency" }
+        require(buildConcurrency > 0) { "The build concurrency must be positive, but was $buildConcurrency" }
+        require(channelCapacity >= 0) { "The channel capacity must not be negative, but was $channelCapacity" }
+    }
+}
@@ -0,0 +1,48 @@
+package com.rrm.fulltextsearch.indexer.async
+
+import kotlinx.coroutines.channels.Channel
+
+/**
+ * A number of bytes which the stages of an indexing pipeline share out between the files they
+ * are working on. A stage suspends until there is room in the budget for its file, which holds up
+ * the stages before it too, so the memory in use is bounded by the budget rather than by the size
+ * of the directory.
+ *
+ * A file which is bigger than the whole budget is let through once nothing else is using it, so
+ * that it can't hold up the pipeline for ever.
+ */
+internal class MemoryBudget(private val capacityInBytes: Long) {
+    init {
+        require(capacityInBytes > 0) { "The memory budget must be positive, but was $capacityInBytes" }
+    }
+
+    private var bytesInUse = 0L
+
+    // Wakes a waiting reservation when bytes are released, so it can check whether it now fits.
+    private val released = Channel<Unit>(Channel.CONFLATED)
+
+    suspend fun reserve(bytes: Long) {
+        while (!tryReserve(bytes)) {
+            released.receive()
+        }
+    }
+
+    fun release(bytes: Long) {
+        synchronized(this) {
+            bytesInUse -= bytes
+        }
+        released.trySend(Unit)
+    }
+
+    @Synchronized
+    fun bytesInUse(): Long = bytesInUse
+
+    @Synchronized
+    private fun tryReserve(bytes: Long): Boolean {
+        if (bytesInUse > 0 && bytesInUse + bytes > capacityInBytes) {
+            return false
+        }
+        bytesInUse += bytes
+        return true
+    }
+}
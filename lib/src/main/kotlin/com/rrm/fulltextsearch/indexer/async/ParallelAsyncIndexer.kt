@@ -1,36 +1,71 @@
 package com.rrm.fulltextsearch.indexer.async
 
 import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ReceiveChannel
 import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.filesystem.FileTextReaderPool
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.closeAfterFailure
 import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.IndexingSchedule
 import com.rrm.fulltextsearch.indexer.sync.SyncIndexer
 import com.rrm.fulltextsearch.indexer.sync.SyncIndexingProgressListener
 import com.rrm.fulltextsearch.search.IndexedDirectory
-import java.util.*
+import java.io.File
+import java.util.Collections.synchronizedList
 
+/**
+ * This indexer indexes the files of a directory in a pipeline of stages, which are joined by
+ * bounded channels: the directory is walked, then each file is read, then its index is built, and
+ * then it is published to the listener. Each stage runs as many coroutines as its concurrency in
+ * the [IndexingPipelineConfig] allows, and a stage which gets ahead of the next one waits for it,
+ * rather than every file being read at once.
+ *
+ * Each file which has been read but not yet indexed is also counted against a memory budget, by
+ * the strategy's estimate of the memory its text and index take while it's built, so the memory
+ * used by indexing is governed by the configuration rather than by the size of the directory.
+ *
+ * By default, the files are sent down the pipeline from the most to the least work to index,
+ * following the [IndexingSchedule], so the indexes which take longest to build are started first.
+ *
+ * If any stage fails, or the indexing is cancelled, the indexes already built are closed once
+ * every stage has stopped, including those which were never published.
+ */
 class ParallelAsyncIndexer(
-    private val indexerStrategy: IndexerStrategy = IndexerStrategy.default()
+    private val indexerStrategy: IndexerStrategy = IndexerStrategy.default(),
+    private val pipelineConfig: IndexingPipelineConfig = IndexingPipelineConfig()
 ) : AsyncIndexer, SyncIndexer {
+    private val indexingPolicy = indexerStrategy.indexingPolicy
+
+    private class ReadFile(val file: File, val fileText: String?, val reservedBytes: Long)
+
     override suspend fun buildIndexAsync(
         directory: Directory,
         indexingProgressListener: AsyncIndexingProgressListener
     ): Job = coroutineScope {
         launch {
-            val indexedFiles = Collections.synchronizedList(mutableListOf<IndexedFile>())
-            val indexingJobs = mutableListOf<Job>()
-            directory.forEachFile {
-                val coroutineName = CoroutineName("build-index-for-${it.path}")
-                indexingJobs.add(launch(Dispatchers.Default + coroutineName) {
-                    val indexedFile = indexerStrategy.buildIndexFor(directory, it)
-                    indexingProgressListener.onNewFileIndexed(indexedFile)
-                    indexedFiles.add(indexedFile)
-                })
+            val memoryBudget = MemoryBudget(pipelineConfig.memoryBudgetInBytes)
+            val fileTextReaders = indexingPolicy.newFileTextReaderPool()
+            val builtFiles = synchronizedList(mutableListOf<IndexedFile>())
+            val publishedFiles = mutableListOf<IndexedFile>()
+            try {
+                // This only throws once every stage has stopped, so no index is built after the
+                // others have been closed.
+                coroutineScope {
+                    val files = walk(directory)
+                    val readFiles = read(directory, files, memoryBudget, fileTextReaders)
+                    val indexedFiles = buildIndexes(directory, readFiles, memoryBudget, builtFiles)
+
+                    for (indexedFile in indexedFiles) {
+                        indexingProgressListener.onNewFileIndexed(indexedFile)
+                        publishedFiles.add(indexedFile)
+                    }
+                }
+            } catch (e: Throwable) {
+                closeAfterFailure(builtFiles, e)
             }
-            joinAll(*indexingJobs.toTypedArray())
-            indexingProgressListener.onIndexingCompleted(
-                IndexedDirectory(indexedFiles)
-            )
+            indexingProgressListener.onIndexingCompleted(IndexedDirectory(publishedFiles))
         }
     }
 
@@ -52,4 +87,91 @@ class ParallelAsyncIndexer(
             })
         theIndexedDirectory!!
     }
-}
\ No newline at end of file
+
+    private fun CoroutineScope.walk(directory: Directory): ReceiveChannel<File> =
+        runStage(1, Dispatchers.IO, "walk") { send ->
+            val files = if (pipelineConfig.largestFirst) {
+                IndexingSchedule.largestFirst(directory, indexerStrategy).asSequence()
+            } else {
+                directory.files()
+            }
+            for (file in files) {
+                send(file)
+            }
+        }
+
+    private fun CoroutineScope.read(
+        directory: Directory,
+        files: ReceiveChannel<File>,
+        memoryBudget: MemoryBudget,
+        fileTextReaders: FileTextReaderPool
+    ): ReceiveChannel<ReadFile> = runStage(pipelineConfig.readConcurrency, Dispatchers.IO, "read") { send ->
+        for (file in files) {
+            val relativePath = directory.relativePathTo(file.path)
+            if (!indexingPolicy.needsTextOf(relativePath)) {
+                send(ReadFile(file, null, 0))
+                continue
+            }
+            // This is held until the index has been built, so it covers both the text and the
+            // index while it's being built.
+            val reservedBytes = indexingPolicy.estimatedMemoryOf(relativePath, file.length())
+            memoryBudget.reserve(reservedBytes)
+            val fileText = try {
+                indexingPolicy.readTextOf(file, fileTextReaders)
+            } catch (e: Throwable) {
+                memoryBudget.release(reservedBytes)
+                throw e
+            }
+            if (fileText == null) {
+                // The strategy found the file shouldn't be indexed, so its text wasn't kept.
+                memoryBudget.release(reservedBytes)
+                send(ReadFile(file, null, 0))
+                continue
+            }
+            send(ReadFile(file, fileText, reservedBytes))
+        }
+    }
+
+    private fun CoroutineScope.buildIndexes(
+        directory: Directory,
+        readFiles: ReceiveChannel<ReadFile>,
+        memoryBudget: MemoryBudget,
+        builtFiles: MutableList<IndexedFile>
+    ): ReceiveChannel<IndexedFile> = runStage(pipelineConfig.buildConcurrency, Dispatchers.Default, "build-index") { send ->
+        for (readFile in readFiles) {
+            val indexedFile = try {
+                indexerStrategy.buildIndexFor(directory, readFile.file, readFile.fileText)
+            } finally {
+                memoryBudget.release(readFile.reservedBytes)
+            }
+            builtFiles.add(indexedFile)
+            send(indexedFile)
+        }
+    }
+
+    /**
+     * Runs a stage of the pipeline in the given number of coroutines, which all send to the same
+     * channel. The channel is closed once they have all finished.
+     */
+    private fun <T> CoroutineScope.runStage(
+        concurrency: Int,
+        dispatcher: CoroutineDispatcher,
+        stageName: String,
+        stage: suspend (send: suspend (T) -> Unit) -> Unit
+    ): ReceiveChannel<T> {
+        val output = Channel<T>(pipelineConfig.channelCapacity)
+        val workers = List(concurrency) { worker ->
+            launch(dispatcher + CoroutineName("$stageName-$worker")) {
+                stage { output.send(it) }
+            }
+        }
+        launch {
+            try {
+                workers.joinAll()
+            } finally {
+                output.close()
+            }
+        }
+        return output
+    }
+}
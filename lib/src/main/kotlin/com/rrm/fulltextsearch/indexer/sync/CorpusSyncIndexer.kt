@@ -0,0 +1,72 @@
+package com.rrm.fulltextsearch.indexer.sync
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.filesystem.FileTextReaderPool
+import com.rrm.fulltextsearch.index.DirectoryIndex
+import com.rrm.fulltextsearch.index.corpus.CorpusIndex
+import com.rrm.fulltextsearch.indexer.DirectoryIndexStrategy
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.async.AsyncIndexer
+import com.rrm.fulltextsearch.indexer.async.AsyncIndexingProgressListener
+import com.rrm.fulltextsearch.search.IndexedDirectory
+import java.nio.charset.Charset
+import java.nio.charset.CodingErrorAction
+
+/**
+ * This indexer builds one [DirectoryIndex] over all the files of the directory, by default a
+ * [CorpusIndex], rather than an index per file. The files are read in parallel, but the index can
+ * only be built once they've all been read, so every file is reported as indexed at the end.
+ *
+ * Files which the default indexer strategy doesn't index, such as jars and other binary files, are
+ * given an empty text.
+ *
+ * @param charset The charset the files are read in.
+ * @param malformedInputAction What to do with bytes which aren't valid in the charset, as described
+ * by [com.rrm.fulltextsearch.filesystem.FileTextReader].
+ */
+class CorpusSyncIndexer(
+    private val directoryIndexStrategy: DirectoryIndexStrategy = DirectoryIndexStrategy.alwaysUseCorpusIndex(),
+    private val charset: Charset = Charsets.UTF_8,
+    private val malformedInputAction: CodingErrorAction = CodingErrorAction.REPLACE
+) : SyncIndexer, AsyncIndexer {
+    override fun buildIndex(
+        directory: Directory,
+        indexingProgressListener: SyncIndexingProgressListener
+    ): IndexedDirectory {
+        val directoryIndex = runBlocking { buildDirectoryIndex(directory) }
+        directoryIndex.indexedFiles().forEach { indexingProgressListener.onNewFileIndexed(it) }
+        return IndexedDirectory(directoryIndex)
+    }
+
+    override suspend fun buildIndexAsync(
+        directory: Directory,
+        indexingProgressListener: AsyncIndexingProgressListener
+    ): Job = coroutineScope {
+        launch(Dispatchers.Default) {
+            val directoryIndex = buildDirectoryIndex(directory)
+            directoryIndex.indexedFiles().forEach { indexingProgressListener.onNewFileIndexed(it) }
+            indexingProgressListener.onIndexingCompleted(IndexedDirectory(directoryIndex))
+        }
+    }
+
+    private suspend fun buildDirectoryIndex(directory: Directory): DirectoryIndex = coroutineScope {
+        val fileTextReaders = FileTextReaderPool(charset, malformedInputAction)
+        val files = directory.forEachFile {
+            async(Dispatchers.Default) {
+                val relativePath = directory.relativePathTo(it.path)
+                val isIndexed = IndexerStrategy.FILE_EXTENSIONS_TO_NOT_INDEX
+                    .none { extension -> relativePath.endsWith(extension) }
+                val fileText = if (isIndexed) fileTextReaders.withReader { reader -> reader.readTextUnlessBinary(it) } else null
+                Pair(relativePath, fileText ?: "")
+            }
+        }.awaitAll()
+        directoryIndexStrategy.buildIndexFor(files)
+    }
+}
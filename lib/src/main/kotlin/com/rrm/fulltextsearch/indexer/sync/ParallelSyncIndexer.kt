@@ -6,10 +6,18 @@ import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import com.rrm.fulltextsearch.filesystem.Directory
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.closeAfterFailure
 import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.readAndBuildIndexFor
+import com.rrm.fulltextsearch.indexer.IndexingSchedule
 import com.rrm.fulltextsearch.search.IndexedDirectory
 import java.util.Collections.synchronizedList
 
+/**
+ * This indexer builds the index of each file in its own coroutine on the default dispatcher. The
+ * files are started from the most to the least work to index, following the [IndexingSchedule].
+ * If any file fails, the indexes already built are closed before the failure is thrown.
+ */
 class ParallelSyncIndexer(
     private val indexerStrategy: IndexerStrategy = IndexerStrategy.default()
 ) : SyncIndexer {
@@ -18,15 +26,23 @@ class ParallelSyncIndexer(
         indexingProgressListener: SyncIndexingProgressListener
     ): IndexedDirectory {
         val indexedFiles = synchronizedList(mutableListOf<IndexedFile>())
-        runBlocking {
-            directory.forEachFile {
-                val coroutineName = CoroutineName("build-index-for-${it.path}")
-                launch(Dispatchers.Default + coroutineName) {
-                    val indexedFile = indexerStrategy.buildIndexFor(directory, it)
-                    indexingProgressListener.onNewFileIndexed(indexedFile)
-                    indexedFiles.add(indexedFile)
+        val fileTextReaders = indexerStrategy.indexingPolicy.newFileTextReaderPool()
+        try {
+            // runBlocking only throws once every coroutine has finished, so no index is built
+            // after the others have been closed.
+            runBlocking {
+                // The coroutines are started in this order, so the most work is started first.
+                for (file in IndexingSchedule.largestFirst(directory, indexerStrategy)) {
+                    val coroutineName = CoroutineName("build-index-for-${file.path}")
+                    launch(Dispatchers.Default + coroutineName) {
+                        val indexedFile = indexerStrategy.readAndBuildIndexFor(directory, file, fileTextReaders)
+                        indexedFiles.add(indexedFile)
+                        indexingProgressListener.onNewFileIndexed(indexedFile)
+                    }
                 }
             }
+        } catch (e: Throwable) {
+            closeAfterFailure(indexedFiles, e)
         }
         return IndexedDirectory(indexedFiles)
     }
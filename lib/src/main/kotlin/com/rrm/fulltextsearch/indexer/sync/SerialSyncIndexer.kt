@@ -1,7 +1,10 @@
 package com.rrm.fulltextsearch.indexer.sync
 
 import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.closeAfterFailure
 import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.readAndBuildIndexFor
 import com.rrm.fulltextsearch.search.IndexedDirectory
 
 class SerialSyncIndexer(
@@ -11,11 +14,17 @@ class SerialSyncIndexer(
         directory: Directory,
         indexingProgressListener: SyncIndexingProgressListener
     ): IndexedDirectory {
-        return IndexedDirectory(
-            directory.forEachFile {
-                val indexedFile = indexerStrategy.buildIndexFor(directory, it)
+        val fileTextReaders = indexerStrategy.indexingPolicy.newFileTextReaderPool()
+        val indexedFiles = mutableListOf<IndexedFile>()
+        try {
+            for (file in directory.files()) {
+                val indexedFile = indexerStrategy.readAndBuildIndexFor(directory, file, fileTextReaders)
+                indexedFiles.add(indexedFile)
                 indexingProgressListener.onNewFileIndexed(indexedFile)
-                indexedFile
-            })
+            }
+        } catch (e: Throwable) {
+            closeAfterFailure(indexedFiles, e)
+        }
+        return IndexedDirectory(indexedFiles)
     }
 }
\ No newline at end of file
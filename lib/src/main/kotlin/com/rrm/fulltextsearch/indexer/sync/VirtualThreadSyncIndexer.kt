@@ -0,0 +1,91 @@
+package com.rrm.fulltextsearch.indexer.sync
+
+import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.closeAfterFailure
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.readAndBuildIndexFor
+import com.rrm.fulltextsearch.indexer.IndexingSchedule
+import com.rrm.fulltextsearch.search.IndexedDirectory
+import com.rrm.fulltextsearch.search.QueryExecutor
+import com.rrm.fulltextsearch.search.VirtualThreads
+import java.util.Collections.synchronizedList
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+
+/**
+ * This indexer builds the index of each file on its own virtual thread, for callers on plain
+ * threads, such as the request threads of a Java service. Unlike [ParallelSyncIndexer], it doesn't
+ * run the files in runBlocking, so the calling thread simply waits for the futures of the files,
+ * and if it's a virtual thread itself, it doesn't pin its carrier thread while it does. Before
+ * JDK 21, each file gets its own platform thread instead.
+ *
+ * Building an index is all computation, so a thread per file doesn't make it any faster than a
+ * thread per core, and would hold the texts and indexes of every file in memory at once. At most
+ * [maxConcurrency] files are indexed at a time, and the calling thread waits for one of them to
+ * finish before it starts the next. The files are started from the most to the least work to
+ * index, following the [IndexingSchedule], and are in that order in the indexed directory.
+ *
+ * If any file fails, the files which haven't been started are cancelled, and once those which
+ * have are finished, all the indexes built are closed before the failure is thrown.
+ *
+ * @param queryExecutor The executor of the queries of the indexed directory. By default, these
+ * also run on virtual threads, so neither indexing nor querying needs a coroutine.
+ */
+class VirtualThreadSyncIndexer(
+    private val indexerStrategy: IndexerStrategy = IndexerStrategy.default(),
+    private val queryExecutor: QueryExecutor = QueryExecutor.virtualThreads(),
+    private val maxConcurrency: Int = Runtime.getRuntime().availableProcessors()
+) : SyncIndexer {
+    init {
+        require(maxConcurrency > 0) { "The max concurrency must be positive, but was $maxConcurrency" }
+    }
+
+    override fun buildIndex(
+        directory: Directory,
+        indexingProgressListener: SyncIndexingProgressListener
+    ): IndexedDirectory {
+        val executorService = VirtualThreads.newThreadPerTaskExecutor("build-index")
+        val permits = Semaphore(maxConcurrency)
+        val fileTextReaders = indexerStrategy.indexingPolicy.newFileTextReaderPool()
+        val futures = mutableListOf<Future<IndexedFile>>()
+        // Every index built, including those of files whose futures were cancelled while they ran,
+        // so that they can all be closed if another file fails.
+        val builtFiles = synchronizedList(mutableListOf<IndexedFile>())
+        try {
+            for (file in IndexingSchedule.largestFirst(directory, indexerStrategy)) {
+                permits.acquire()
+                futures.add(executorService.submit(Callable {
+                    try {
+                        indexerStrategy.readAndBuildIndexFor(directory, file, fileTextReaders).also { indexedFile ->
+                            builtFiles.add(indexedFile)
+                            indexingProgressListener.onNewFileIndexed(indexedFile)
+                        }
+                    } finally {
+                        permits.release()
+                    }
+                }))
+            }
+            val indexedFiles = futures.map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+            return IndexedDirectory(indexedFiles, queryExecutor)
+        } catch (e: Throwable) {
+            futures.forEach { it.cancel(true) }
+            executorService.shutdown()
+            // Building an index doesn't stop when its thread is interrupted, so at most
+            // maxConcurrency files are still being built, and they are waited for.
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)
+            closeAfterFailure(builtFiles, e)
+        } finally {
+            executorService.shutdown()
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.rrm.fulltextsearch.search
+
+/**
+ * The line of a file on which a query match was found. Line numbers and columns count from 1, as
+ * they do in editors.
+ */
+data class FileLine(val lineNumber: Int, val column: Int, val text: String)
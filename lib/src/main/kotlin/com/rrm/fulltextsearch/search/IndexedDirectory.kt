@@ -1,33 +1,384 @@
 package com.rrm.fulltextsearch.search
 
 import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withContext
+import com.rrm.fulltextsearch.index.DirectoryIndex
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.closeAll
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.time.Duration
 
-class IndexedDirectory(private val indexedFiles: List<IndexedFile>) {
+/**
+ * The indexed files of a directory. The files are either indexed one by one, in which case a query
+ * is run against each of them, or they are all views of one [DirectoryIndex], such as a
+ * [com.rrm.fulltextsearch.index.corpus.CorpusIndex], in which case a query is run once against the
+ * whole directory.
+ *
+ * Before a query is run against a file, the file is asked whether it [IndexedFile.mayContain] the
+ * query string at all, which most files can rule out from a small summary of their text.
+ */
+class IndexedDirectory private constructor(
+    indexedFiles: List<IndexedFile>,
+    private val directoryIndex: DirectoryIndex?,
+    private val queryExecutor: QueryExecutor,
+    private val queryResultCache: QueryResultCache?
+) : AutoCloseable {
+    // The id of each file is its index in this array, and query matches are tagged with it, so a
+    // match can be resolved to its file in constant time. Matches which come without an id, e.g.
+    // because they were built by hand, are resolved by their path instead.
+    private val indexedFiles: Array<IndexedFile> = indexedFiles.toTypedArray()
+    private val fileIdsByRelativePath: Map<String, Int> =
+        this.indexedFiles.withIndex().associate { (fileId, indexedFile) -> indexedFile.relativePath() to fileId }
+
+    // The ids of the files searched by each worker, in batches of about the same total size. The
+    // files don't change, so they are only shared out once.
+    private val batches: List<IntArray> by lazy {
+        queryExecutor.partition(IntArray(this.indexedFiles.size) { this.indexedFiles[it].textLength() })
+    }
+
+    @Volatile
+    private var closed = false
+
+    /**
+     * @param queryResultCache If given, the results of each query are cached, so a repeated query
+     * doesn't search the files again. The cache mustn't be shared with another directory.
+     */
+    constructor(
+        indexedFiles: List<IndexedFile>,
+        queryExecutor: QueryExecutor = QueryExecutor.default(),
+        queryResultCache: QueryResultCache? = null
+    ) : this(indexedFiles, null, queryExecutor, queryResultCache)
+
+    constructor(
+        directoryIndex: DirectoryIndex,
+        queryExecutor: QueryExecutor = QueryExecutor.default(),
+        queryResultCache: QueryResultCache? = null
+    ) : this(directoryIndex.indexedFiles(), directoryIndex, queryExecutor, queryResultCache)
+
+    /**
+     * Blocks the calling thread until the query has finished, so this is for callers which aren't
+     * running in a coroutine. Those which are should use [queryCaseSensitiveResultsAsync]. The
+     * batches of files are handed to the [QueryExecutor] without a coroutine, so with
+     * [QueryExecutor.virtualThreads], a caller on a virtual thread doesn't pin its carrier thread
+     * while it waits.
+     *
+     * This has no deadline. For one, use [queryCaseSensitiveResults] with a timeout, and
+     * [QueryResults.toQueryMatches] on its results.
+     */
     fun queryCaseSensitive(s: String): List<QueryMatch> {
-        val collector = QueryMatchListener.MatchCollector()
-        runBlocking { queryCaseSensitiveAsync(s, collector) }
-        return collector.matches()
+        return queryCaseSensitiveResults(s).toQueryMatches()
+    }
+
+    /**
+     * Finds the matches of the query string, grouped by file into [QueryResults], without
+     * building an object per match. Like [queryCaseSensitive], this blocks the calling thread.
+     */
+    fun queryCaseSensitiveResults(s: String): QueryResults {
+        checkOpen()
+        queryResultCache?.get(s)?.let { return it }
+        return searchFiles(s).also { cache(s, it) }
+    }
+
+    /**
+     * Finds the same matches as [queryCaseSensitiveResults], but suspends rather than blocking.
+     * The files are searched in size-balanced batches on the dispatcher of the [QueryExecutor],
+     * and each batch collects its matches into its own buffer, so the workers don't contend with
+     * each other. The buffers are concatenated at the end.
+     */
+    suspend fun queryCaseSensitiveResultsAsync(s: String): QueryResults {
+        checkOpen()
+        queryResultCache?.get(s)?.let { return it }
+        return searchFilesAsync(s).also { cache(s, it) }
+    }
+
+    /**
+     * Finds the matches of the query string like [queryCaseSensitiveResults], but stops searching
+     * once the timeout has passed, and returns the matches in the files searched so far. Each
+     * worker checks the deadline before it searches each file, so a file which has been started is
+     * finished, and the query can overrun by as long as it takes to search one file.
+     *
+     * A [DirectoryIndex] checks the deadline itself, through [DirectoryIndex.queryResults], so how
+     * closely it keeps to it depends on the index. The trigram index checks it before verifying
+     * each candidate file, while the corpus index searches the whole directory in one go, so its
+     * results are never truncated.
+     */
+    fun queryCaseSensitiveResults(s: String, timeout: Duration): PartialQueryResults {
+        checkOpen()
+        val deadline = Deadline(timeout)
+        queryResultCache?.get(s)?.let { return PartialQueryResults(it, indexedFiles.size, 0) }
+        if (directoryIndex != null) {
+            return cachedIfComplete(s, directoryIndex.queryResults(s, deadline.nanos))
+        }
+        if (batches.size <= 1) {
+            return partialResultsOf(s, queryResultsOfBatch(s, batches.firstOrNull() ?: IntArray(0), deadline), deadline)
+        }
+        val results = queryExecutor.executeBlocking(batches) { queryResultsOfBatch(s, it, deadline) }
+        return partialResultsOf(s, QueryResults.concatenate(results), deadline)
+    }
+
+    /**
+     * Finds the same matches as [queryCaseSensitiveResults] with a timeout, but suspends rather
+     * than blocking.
+     */
+    suspend fun queryCaseSensitiveResultsAsync(s: String, timeout: Duration): PartialQueryResults {
+        checkOpen()
+        val deadline = Deadline(timeout)
+        queryResultCache?.get(s)?.let { return PartialQueryResults(it, indexedFiles.size, 0) }
+        return queryCaseSensitiveResultsAsync(s, deadline)
+    }
+
+    /**
+     * Finds at most [limit] matches of the query string, and stops searching as soon as it has
+     * them, so the time taken depends on the limit rather than on how many matches there are.
+     */
+    fun queryCaseSensitive(s: String, limit: Int): List<QueryMatch> {
+        require(limit >= 0) { "The limit must not be negative, but was $limit" }
+        checkOpen()
+        if (limit == 0) {
+            return listOf()
+        }
+        return runBlocking { queryCaseSensitiveFlow(s).take(limit).toList() }
     }
 
+    /**
+     * Streams the matches of the query string. Each batch of files is searched in its own
+     * coroutine on the dispatcher of the [QueryExecutor], and the matches are only built as they
+     * are sent, so when the collector stops early, e.g. using take(n), the search of the files it
+     * didn't need is cancelled.
+     *
+     * The flow has no deadline of its own. To bound it, collect it within withTimeout, which
+     * cancels the search the same way.
+     */
+    fun queryCaseSensitiveFlow(s: String): Flow<QueryMatch> {
+        checkOpen()
+        if (directoryIndex != null) {
+            return directoryIndex.lazyQuery(s).asFlow().flowOn(queryExecutor.dispatcher)
+        }
+        return channelFlow {
+            for (batch in batches) {
+                launch(queryExecutor.dispatcher) {
+                    for (fileId in batch) {
+                        if (!indexedFiles[fileId].mayContain(s)) {
+                            continue
+                        }
+                        for (match in indexedFiles[fileId].lazyQuery(s, fileId)) {
+                            send(match)
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the matches of the query string to the listener one file at a time, as each file is
+     * searched. Like [queryCaseSensitiveResultsAsync], the batches of files are searched on the
+     * dispatcher of the [QueryExecutor], so the listener may be called from any of its threads.
+     *
+     * This has no deadline of its own. To bound it, call it within withTimeout, which cancels the
+     * search of the files which haven't been started. The matches already passed to the listener
+     * are those of the files which were searched in time.
+     */
     suspend fun queryCaseSensitiveAsync(
         s: String,
         listener: QueryMatchListener
     ): Unit = coroutineScope {
-        indexedFiles.forEach { indexedFile ->
-            launch {
-                val matches = indexedFile.query(s)
-                if (matches.isNotEmpty()) {
-                    listener.onQueryMatches(matches)
+        checkOpen()
+        if (directoryIndex != null) {
+            val results = withContext(queryExecutor.dispatcher) { directoryIndex.queryResults(s) }
+            for (i in 0 until results.fileCount) {
+                listener.onQueryMatches(
+                    results.offsets(i).map { QueryMatch(results.relativePath(i), it, results.fileId(i)) }
+                )
+            }
+            return@coroutineScope
+        }
+        for (batch in batches) {
+            launch(queryExecutor.dispatcher) {
+                for (fileId in batch) {
+                    ensureActive()
+                    if (!indexedFiles[fileId].mayContain(s)) {
+                        continue
+                    }
+                    val matches = indexedFiles[fileId].query(s, fileId)
+                    if (matches.isNotEmpty()) {
+                        listener.onQueryMatches(matches)
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Starts a session for searching this directory as a query string is typed, which narrows down
+     * the matches of each keystroke from those of the last. A [DirectoryIndex] is queried afresh
+     * for each keystroke instead, since that is one search of the index rather than one per file.
+     */
+    fun typeAheadSession(): TypeAheadSession {
+        checkOpen()
+        return TypeAheadSession(indexedFiles, directoryIndex, queryExecutor)
+    }
+
+    /**
+     * Counts the occurrences of the query string across all the indexed files, without building
+     * any query matches.
+     *
+     * This searches every file on the calling thread, and has no deadline, so a count can't be
+     * truncated. A caller which needs one can sum the sizes of the results of
+     * [queryCaseSensitiveResults] with a timeout.
+     */
+    fun count(s: String): Int {
+        checkOpen()
+        if (directoryIndex != null) {
+            return directoryIndex.count(s)
+        }
+        return indexedFiles.sumOf { if (it.mayContain(s)) it.count(s) else 0 }
+    }
+
+    /**
+     * Finds the relative paths of the files which contain the query string, without building a
+     * query match for each occurrence.
+     *
+     * Like [count], this has no deadline. A caller which needs one can take the paths of the
+     * results of [queryCaseSensitiveResults] with a timeout.
+     */
+    fun filesContaining(s: String): Set<String> {
+        checkOpen()
+        if (directoryIndex != null) {
+            return directoryIndex.filesContaining(s)
+        }
+        return indexedFiles.filter { it.mayContain(s) && it.count(s) > 0 }.mapTo(mutableSetOf()) { it.relativePath() }
+    }
+
     fun correspondingFileLine(queryMatch: QueryMatch): String {
-        return indexedFiles.first { it.relativePath() == queryMatch.fileRelativePath }
-            .getLineOfChar(queryMatch.offset)
+        checkOpen()
+        return indexedFileOf(queryMatch).getLineOfChar(queryMatch.offset)
+    }
+
+    /**
+     * Gets the same line as [correspondingFileLine], along with the line number and column of the
+     * query match.
+     */
+    fun correspondingFileLineWithPosition(queryMatch: QueryMatch): FileLine {
+        checkOpen()
+        return indexedFileOf(queryMatch).getFileLineOfChar(queryMatch.offset)
+    }
+
+    /**
+     * Closes each of the indexed files, which frees any memory they hold outside the Java heap, and
+     * drops any cached results. Once it has been closed, querying the directory throws an
+     * IllegalStateException, while closing it again does nothing.
+     *
+     * A query which is already running when the directory is closed isn't stopped, so the caller
+     * should close the directory only once its queries have finished.
+     */
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        queryResultCache?.invalidate()
+        closeAll(indexedFiles.asList())
+    }
+
+    private fun checkOpen() {
+        check(!closed) { "The directory has been closed" }
+    }
+
+    private fun cache(s: String, results: QueryResults) {
+        val cache = queryResultCache ?: return
+        cache.put(s, results)
+        // A query which raced with close() mustn't leave its results in the cache.
+        if (closed) {
+            cache.invalidate()
+        }
+    }
+
+    private fun searchFiles(s: String): QueryResults {
+        if (directoryIndex != null) {
+            return directoryIndex.queryResults(s)
+        }
+        if (batches.size <= 1) {
+            return queryResultsOfBatch(s, batches.firstOrNull() ?: IntArray(0))
+        }
+        return QueryResults.concatenate(queryExecutor.executeBlocking(batches) { queryResultsOfBatch(s, it) })
+    }
+
+    private suspend fun searchFilesAsync(s: String): QueryResults {
+        if (directoryIndex != null) {
+            return withContext(queryExecutor.dispatcher) { directoryIndex.queryResults(s) }
+        }
+        return QueryResults.concatenate(queryExecutor.execute(batches) { queryResultsOfBatch(s, it) })
+    }
+
+    private suspend fun queryCaseSensitiveResultsAsync(s: String, deadline: Deadline): PartialQueryResults {
+        if (directoryIndex != null) {
+            val partialResults = withContext(queryExecutor.dispatcher) { directoryIndex.queryResults(s, deadline.nanos) }
+            return cachedIfComplete(s, partialResults)
+        }
+        val results = queryExecutor.execute(batches) { queryResultsOfBatch(s, it, deadline) }
+        return partialResultsOf(s, QueryResults.concatenate(results), deadline)
+    }
+
+    private fun partialResultsOf(s: String, results: QueryResults, deadline: Deadline): PartialQueryResults {
+        val filesCompleted = deadline.filesCompleted.get()
+        return cachedIfComplete(s, PartialQueryResults(results, filesCompleted, indexedFiles.size - filesCompleted))
+    }
+
+    private fun cachedIfComplete(s: String, partialResults: PartialQueryResults): PartialQueryResults {
+        if (!partialResults.isTruncated) {
+            cache(s, partialResults.results)
+        }
+        return partialResults
+    }
+
+    private fun queryResultsOfBatch(s: String, batch: IntArray, deadline: Deadline? = null): QueryResults {
+        val builder = QueryResults.Builder()
+        for (fileId in batch) {
+            if (deadline != null) {
+                if (deadline.hasPassed()) {
+                    break
+                }
+                deadline.filesCompleted.incrementAndGet()
+            }
+            val indexedFile = indexedFiles[fileId]
+            if (!indexedFile.mayContain(s)) {
+                continue
+            }
+            builder.add(fileId, indexedFile.relativePath(), indexedFile.queryOffsets(s))
+        }
+        return builder.build()
+    }
+
+    /**
+     * The time by which a query should finish, along with how many files it has searched so far.
+     */
+    private class Deadline(timeout: Duration) {
+        val nanos = System.nanoTime() + timeout.inWholeNanoseconds
+        val filesCompleted = AtomicInteger()
+
+        fun hasPassed(): Boolean = System.nanoTime() - nanos >= 0
+    }
+
+    private fun indexedFileOf(queryMatch: QueryMatch): IndexedFile {
+        val fileId = queryMatch.fileId
+        // The path check guards against a match which was found by a different directory.
+        if (fileId in indexedFiles.indices &&
+            indexedFiles[fileId].relativePath() == queryMatch.fileRelativePath
+        ) {
+            return indexedFiles[fileId]
+        }
+        val fileIdOfPath = fileIdsByRelativePath[queryMatch.fileRelativePath]
+            ?: throw NoSuchElementException("There is no indexed file at '${queryMatch.fileRelativePath}'")
+        return indexedFiles[fileIdOfPath]
     }
 }
@@ -0,0 +1,18 @@
+package com.rrm.fulltextsearch.search
+
+/**
+ * The results of a query which had a deadline. If the deadline passed before every file was
+ * searched, the results only hold the matches in the files which were, and the rest are counted
+ * as skipped.
+ */
+data class PartialQueryResults(
+    val results: QueryResults,
+    val filesCompleted: Int,
+    val filesSkipped: Int
+) {
+    /**
+     * Whether some files weren't searched, so there may be matches missing from the results.
+     */
+    val isTruncated: Boolean
+        get() = filesSkipped > 0
+}
@@ -0,0 +1,145 @@
+package com.rrm.fulltextsearch.search
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.async
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withContext
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Runs the queries of an [IndexedDirectory] against its files.
+ *
+ * Rather than a coroutine per file, the files are split once into a few batches of about the same
+ * total size, and a query runs one coroutine per batch. There are a few batches per worker, so
+ * that a worker which finishes early can take on another batch rather than waiting for the
+ * slowest one.
+ *
+ * The batches run on the executor's own dispatcher rather than on the caller's, so queries don't
+ * compete with other work for threads. The default executor uses a work-stealing fork-join pool
+ * in FIFO mode, so batches are run in the order they were submitted, and a query which was made
+ * first isn't starved by the queries made after it.
+ *
+ * An executor which is backed by an [ExecutorService] can also run a query for a caller which
+ * isn't in a coroutine, by submitting the batches to the service and waiting for them, rather
+ * than blocking the caller's thread in runBlocking.
+ */
+class QueryExecutor private constructor(
+    val dispatcher: CoroutineDispatcher,
+    private val parallelism: Int,
+    private val executorService: ExecutorService?
+) {
+    constructor(dispatcher: CoroutineDispatcher, parallelism: Int) : this(dispatcher, parallelism, null)
+
+    constructor(executorService: ExecutorService, parallelism: Int) :
+            this(executorService.asCoroutineDispatcher(), parallelism, executorService)
+
+    init {
+        require(parallelism > 0) { "The parallelism must be positive, but was $parallelism" }
+    }
+
+    companion object {
+        private const val BATCHES_PER_WORKER = 4
+
+        private val default: QueryExecutor by lazy {
+            withParallelism(Runtime.getRuntime().availableProcessors())
+        }
+
+        /**
+         * @return The executor which is shared by all the directories which aren't given one.
+         */
+        fun default(): QueryExecutor = default
+
+        /**
+         * @return An executor with its own fork-join pool of the given size. The threads of the
+         * pool are daemon threads, so the pool doesn't need to be shut down.
+         */
+        fun withParallelism(parallelism: Int): QueryExecutor {
+            val pool = ForkJoinPool(
+                parallelism,
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null,
+                true
+            )
+            return QueryExecutor(pool, parallelism)
+        }
+
+        /**
+         * @return An executor which runs each batch of a query on its own virtual thread, for
+         * callers on plain threads which run many queries at once. The files are still split into
+         * the same number of batches as an executor with the given parallelism would use. Before
+         * JDK 21, each batch gets its own platform thread instead.
+         */
+        fun virtualThreads(parallelism: Int = Runtime.getRuntime().availableProcessors()): QueryExecutor =
+            QueryExecutor(VirtualThreads.newThreadPerTaskExecutor("query-executor"), parallelism)
+    }
+
+    /**
+     * Splits items into batches whose total weights are about equal. The items are taken from the
+     * heaviest to the lightest, and each is added to the batch which is lightest so far.
+     *
+     * @return The indices of the items in each batch, in ascending order.
+     */
+    fun partition(weights: IntArray): List<IntArray> {
+        val batchCount = minOf(weights.size, parallelism * BATCHES_PER_WORKER)
+        if (batchCount == 0) {
+            return listOf()
+        }
+        val loads = LongArray(batchCount)
+        val batchSizes = IntArray(batchCount)
+        val batchOfItem = IntArray(weights.size)
+        val lightestBatches = PriorityQueue<Int>(batchCount, compareBy({ loads[it] }, { it }))
+        (0 until batchCount).forEach { lightestBatches.add(it) }
+        for (item in weights.indices.sortedByDescending { weights[it] }) {
+            val batch = lightestBatches.poll()
+            batchOfItem[item] = batch
+            batchSizes[batch]++
+            // Every item costs something to query, however small it is.
+            loads[batch] += weights[item].toLong() + 1
+            lightestBatches.add(batch)
+        }
+
+        val batches = Array(batchCount) { IntArray(batchSizes[it]) }
+        val filled = IntArray(batchCount)
+        for (item in weights.indices) {
+            val batch = batchOfItem[item]
+            batches[batch][filled[batch]++] = item
+        }
+        return batches.toList()
+    }
+
+    /**
+     * Runs the work on each of the batches on this executor's dispatcher, and suspends until it
+     * has all finished.
+     */
+    suspend fun <T> execute(batches: List<IntArray>, work: (batch: IntArray) -> T): List<T> =
+        withContext(dispatcher) {
+            batches.map { async { work(it) } }.awaitAll()
+        }
+
+    /**
+     * Runs the work on each of the batches like [execute], but blocks the calling thread until it
+     * has all finished. The batches are submitted straight to the executor service, if there is
+     * one, and otherwise they are run in runBlocking.
+     */
+    fun <T> executeBlocking(batches: List<IntArray>, work: (batch: IntArray) -> T): List<T> {
+        val executorService = executorService ?: return runBlocking { execute(batches, work) }
+        val futures = batches.map { executorService.submit(Callable { work(it) }) }
+        try {
+            return futures.map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            futures.forEach { it.cancel(false) }
+        }
+    }
+}
@@ -1,3 +1,23 @@
 package com.rrm.fulltextsearch.search
 
-data class QueryMatch(val fileRelativePath: String, val offset: Int)
+/**
+ * A match of a query string at an offset of a file.
+ *
+ * @param fileId The position of the match's file in the [IndexedDirectory] which found it, so that
+ * the directory can get back to the file without comparing paths. It isn't part of the identity of
+ * the match, so a match found by an IndexedFile on its own, which has [NO_FILE_ID], is equal to the
+ * same match found through a directory, and prints the same. That's why this isn't a data class,
+ * whose copy, toString and componentN functions would all include the id.
+ */
+class QueryMatch(val fileRelativePath: String, val offset: Int, val fileId: Int = NO_FILE_ID) {
+    override fun equals(other: Any?): Boolean =
+        other is QueryMatch && fileRelativePath == other.fileRelativePath && offset == other.offset
+
+    override fun hashCode(): Int = 31 * fileRelativePath.hashCode() + offset
+
+    override fun toString(): String = "QueryMatch(fileRelativePath=$fileRelativePath, offset=$offset)"
+
+    companion object {
+        const val NO_FILE_ID = -1
+    }
+}
@@ -0,0 +1,86 @@
+package com.rrm.fulltextsearch.search
+
+/**
+ * Keeps the results of recent queries, so a query which is repeated is answered without searching
+ * the files again. The cache is bounded by the estimated size of the results it holds rather than
+ * by how many there are, since the results of one common query can outweigh those of thousands
+ * of rare ones. When it is full, the results which were used least recently are evicted.
+ *
+ * The results of a query are only valid for the files they were found in, so a cache belongs to
+ * one [IndexedDirectory], which clears it when it is closed. Anything which changes what the
+ * directory would find must [invalidate] the cache.
+ */
+class QueryResultCache(private val maxSizeInBytes: Long) {
+    init {
+        require(maxSizeInBytes > 0) { "The maximum size must be positive, but was $maxSizeInBytes" }
+    }
+
+    private class Entry(val results: QueryResults, val sizeInBytes: Long)
+
+    // Iterated from the least to the most recently used.
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+
+    private var hits = 0L
+    private var misses = 0L
+    private var sizeInBytes = 0L
+
+    /**
+     * @return The cached results of the query, or null if there are none, in which case the miss
+     * is counted.
+     */
+    @Synchronized
+    fun get(queryString: String): QueryResults? {
+        val entry = entries[queryString]
+        if (entry == null) {
+            misses++
+            return null
+        }
+        hits++
+        return entry.results
+    }
+
+    /**
+     * Caches the results of the query, evicting the least recently used results to make room for
+     * them. Results which are bigger than the whole cache aren't cached.
+     */
+    @Synchronized
+    fun put(queryString: String, results: QueryResults) {
+        val entrySize = sizeInBytesOf(queryString, results)
+        entries.remove(queryString)?.let { sizeInBytes -= it.sizeInBytes }
+        if (entrySize > maxSizeInBytes) {
+            return
+        }
+        val leastRecentlyUsed = entries.values.iterator()
+        while (sizeInBytes + entrySize > maxSizeInBytes) {
+            sizeInBytes -= leastRecentlyUsed.next().sizeInBytes
+            leastRecentlyUsed.remove()
+        }
+        entries[queryString] = Entry(results, entrySize)
+        sizeInBytes += entrySize
+    }
+
+    /**
+     * Drops all the cached results. The hit and miss counts are kept.
+     */
+    @Synchronized
+    fun invalidate() {
+        entries.clear()
+        sizeInBytes = 0
+    }
+
+    @Synchronized
+    fun stats(): Stats = Stats(hits, misses, entries.size, sizeInBytes)
+
+    data class Stats(val hits: Long, val misses: Long, val entries: Int, val sizeInBytes: Long) {
+        val hitRate: Double
+            get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+    }
+
+    private fun sizeInBytesOf(queryString: String, results: QueryResults): Long =
+        ENTRY_OVERHEAD_IN_BYTES + 2L * queryString.length + results.sizeInBytes()
+
+    private companion object {
+        // The map entry, the key and value objects and their headers, roughly.
+        const val ENTRY_OVERHEAD_IN_BYTES = 96L
+    }
+}
@@ -0,0 +1,155 @@
+package com.rrm.fulltextsearch.search
+
+/**
+ * The matches of a query, grouped by file. Rather than an object per match, the results are a
+ * few arrays: the id and relative path of each file with matches, and all the offsets of the
+ * matches, where those of each file form one run. A query with millions of matches therefore
+ * allocates a few arrays rather than millions of objects.
+ */
+class QueryResults private constructor(
+    private val fileIds: IntArray,
+    private val relativePaths: Array<String>,
+    // The offsets of the matches in the file at index i are runStarts[i] until runStarts[i + 1].
+    private val runStarts: IntArray,
+    private val offsets: IntArray
+) {
+    companion object {
+        private const val ARRAY_HEADER_IN_BYTES = 16
+
+        val EMPTY = QueryResults(IntArray(0), arrayOf(), IntArray(1), IntArray(0))
+
+        /**
+         * Joins the results of several queries, e.g. those found by different workers, into one.
+         * The files of each are assumed to be distinct. The files of the joined results are in
+         * order of their ids, whichever results they came from.
+         */
+        fun concatenate(results: List<QueryResults>): QueryResults {
+            if (results.size == 1) {
+                return results[0]
+            }
+            // Each file is referred to by the index of its results and its index in them.
+            val files = results.indices.flatMap { r -> (0 until results[r].fileCount).map { Pair(r, it) } }
+                .sortedBy { (r, i) -> results[r].fileIds[i] }
+            val builder = Builder(files.size, results.sumOf { it.size })
+            for ((r, i) in files) {
+                val result = results[r]
+                builder.add(
+                    result.fileIds[i],
+                    result.relativePaths[i],
+                    result.offsets,
+                    result.runStarts[i],
+                    result.runStarts[i + 1]
+                )
+            }
+            return builder.build()
+        }
+    }
+
+    /**
+     * The total number of matches.
+     */
+    val size: Int
+        get() = offsets.size
+
+    /**
+     * The number of files with at least one match.
+     */
+    val fileCount: Int
+        get() = fileIds.size
+
+    fun isEmpty(): Boolean = offsets.isEmpty()
+
+    /**
+     * Estimates the memory taken by these results. The relative paths are shared with the indexed
+     * files, so only the references to them are counted.
+     */
+    fun sizeInBytes(): Long =
+        4L * (fileIds.size + runStarts.size + offsets.size) + 8L * relativePaths.size + 4 * ARRAY_HEADER_IN_BYTES
+
+    fun fileId(i: Int): Int = fileIds[i]
+
+    fun relativePath(i: Int): String = relativePaths[i]
+
+    /**
+     * @return A copy of the offsets of the matches in the file at index i.
+     */
+    fun offsets(i: Int): IntArray = offsets.copyOfRange(runStarts[i], runStarts[i + 1])
+
+    inline fun forEachMatch(action: (fileId: Int, offset: Int) -> Unit) {
+        for (i in 0 until fileCount) {
+            forEachOffset(i) { action(fileId(i), it) }
+        }
+    }
+
+    inline fun forEachOffset(i: Int, action: (offset: Int) -> Unit) {
+        for (j in runStart(i) until runStart(i + 1)) {
+            action(offsetAt(j))
+        }
+    }
+
+    @PublishedApi
+    internal fun runStart(i: Int): Int = runStarts[i]
+
+    @PublishedApi
+    internal fun offsetAt(j: Int): Int = offsets[j]
+
+    /**
+     * Builds a [QueryMatch] for each match, for callers which want the matches as objects.
+     */
+    fun toQueryMatches(): List<QueryMatch> {
+        val queryMatches = ArrayList<QueryMatch>(size)
+        for (i in 0 until fileCount) {
+            for (j in runStarts[i] until runStarts[i + 1]) {
+                queryMatches.add(QueryMatch(relativePaths[i], offsets[j], fileIds[i]))
+            }
+        }
+        return queryMatches
+    }
+
+    /**
+     * Collects the matches of one file after another. Each worker searching a directory has its
+     * own builder, so no synchronization is needed until the results are concatenated.
+     */
+    class Builder(expectedFiles: Int = 16, expectedMatches: Int = 64) {
+        private var fileIds = IntArray(maxOf(expectedFiles, 1))
+        private var relativePaths = arrayOfNulls<String>(maxOf(expectedFiles, 1))
+        private var runStarts = IntArray(maxOf(expectedFiles, 1) + 1)
+        private var offsets = IntArray(maxOf(expectedMatches, 1))
+        private var fileCount = 0
+        private var size = 0
+
+        /**
+         * Adds the matches of one file, whose offsets are offsets[from] until offsets[to]. Nothing
+         * is added if there are no offsets.
+         */
+        fun add(fileId: Int, relativePath: String, offsets: IntArray, from: Int = 0, to: Int = offsets.size) {
+            if (from == to) {
+                return
+            }
+            if (fileCount == fileIds.size) {
+                fileIds = fileIds.copyOf(fileCount * 2)
+                relativePaths = relativePaths.copyOf(fileCount * 2)
+                runStarts = runStarts.copyOf(fileCount * 2 + 1)
+            }
+            val newSize = size + (to - from)
+            if (newSize > this.offsets.size) {
+                this.offsets = this.offsets.copyOf(maxOf(newSize, this.offsets.size * 2))
+            }
+            System.arraycopy(offsets, from, this.offsets, size, to - from)
+            fileIds[fileCount] = fileId
+            relativePaths[fileCount] = relativePath
+            size = newSize
+            runStarts[++fileCount] = size
+        }
+
+        fun build(): QueryResults {
+            @Suppress("UNCHECKED_CAST")
+            return QueryResults(
+                fileIds.copyOf(fileCount),
+                relativePaths.copyOf(fileCount) as Array<String>,
+                runStarts.copyOf(fileCount + 1),
+                offsets.copyOf(size)
+            )
+        }
+    }
+}
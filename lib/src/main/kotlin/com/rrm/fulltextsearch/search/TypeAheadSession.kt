@@ -0,0 +1,151 @@
+package com.rrm.fulltextsearch.search
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.job
+import kotlinx.coroutines.withContext
+import com.rrm.fulltextsearch.index.DirectoryIndex
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.PrefixCursor
+
+/**
+ * Searches a directory as a query string is typed, one char at a time. Rather than running each
+ * query string from scratch, the session keeps a [PrefixCursor] for each file which still matches
+ * the query string typed so far. Typing a char extends only those cursors, and the files which
+ * drop out are never looked at again until the char is deleted, so a keystroke costs time in
+ * proportion to the number of files which still match, rather than to the length of the query
+ * string times the number of files.
+ *
+ * The cursors of each prefix of the query string are kept, so deleting chars only goes back to
+ * them. When a new query string arrives while the cursors of the last one are still being extended
+ * or its results collected, that work is cancelled, since its results are no longer wanted. The
+ * cursors are extended outside the session's lock, so the next query string doesn't wait for
+ * them to get cancelled.
+ *
+ * The files which are views of one [DirectoryIndex] have no cursors of their own, and querying
+ * them one by one would search the whole index once per file. So the session of such a directory
+ * runs each query string against the index instead, which finds its matches in one go.
+ */
+class TypeAheadSession internal constructor(
+    private val indexedFiles: Array<IndexedFile>,
+    private val directoryIndex: DirectoryIndex?,
+    private val queryExecutor: QueryExecutor
+) {
+    // The files matching a prefix of the query string, along with their cursors.
+    private class Step(val fileIds: IntArray, val cursors: Array<PrefixCursor>)
+
+    // steps[i] holds the files matching the first i chars of the query string. The list is never
+    // changed, but replaced by the one of the next query string, so it can be extended unlocked.
+    // A directory index has no steps.
+    private var steps = if (directoryIndex != null) listOf() else listOf(
+        Step(IntArray(indexedFiles.size) { it }, Array(indexedFiles.size) { indexedFiles[it].prefixCursor() })
+    )
+
+    // The results of the query string typed so far, when they come from the directory index.
+    private var directoryIndexResults = QueryResults.EMPTY
+    private var queryString = ""
+    private var updates = 0
+
+    // The extension of the cursors and the collection of the matches of the latest query string,
+    // while they are running.
+    private var inFlight: Job? = null
+
+    /**
+     * Moves the session on to the new query string, and finds its matches. Only the chars after
+     * the prefix which the new query string shares with the last one are followed.
+     *
+     * @return The matches of the new query string, or null if a later call to this superseded
+     * it before its matches were collected, in which case the collection was cancelled.
+     */
+    suspend fun update(newQueryString: String): QueryResults? {
+        val update = synchronized(this) {
+            inFlight?.cancel()
+            inFlight = null
+            ++updates
+        }
+        return try {
+            withContext(queryExecutor.dispatcher) {
+                val (lastQueryString, lastSteps) = synchronized(this@TypeAheadSession) {
+                    if (update != updates) {
+                        return@withContext null
+                    }
+                    inFlight = coroutineContext.job
+                    Pair(queryString, steps)
+                }
+                if (directoryIndex != null) {
+                    val results = directoryIndex.queryResults(newQueryString)
+                    synchronized(this@TypeAheadSession) {
+                        if (update != updates) {
+                            return@withContext null
+                        }
+                        directoryIndexResults = results
+                        queryString = newQueryString
+                    }
+                    return@withContext results
+                }
+                val newSteps = stepsOf(newQueryString, lastQueryString, lastSteps)
+                synchronized(this@TypeAheadSession) {
+                    if (update != updates) {
+                        return@withContext null
+                    }
+                    steps = newSteps
+                    queryString = newQueryString
+                }
+                val step = newSteps.last()
+                if (newQueryString.isEmpty()) {
+                    return@withContext QueryResults.EMPTY
+                }
+                val builder = QueryResults.Builder(step.fileIds.size)
+                for (i in step.fileIds.indices) {
+                    ensureActive()
+                    val fileId = step.fileIds[i]
+                    builder.add(fileId, indexedFiles[fileId].relativePath(), step.cursors[i].offsets())
+                }
+                builder.build()
+            }
+        } catch (e: CancellationException) {
+            // This rethrows if it was the caller which was cancelled, rather than the collection.
+            currentCoroutineContext().ensureActive()
+            null
+        }
+    }
+
+    /**
+     * @return The relative paths of the files which match the query string typed so far, without
+     * collecting the matches.
+     */
+    @Synchronized
+    fun matchingFiles(): List<String> =
+        if (queryString.isEmpty()) {
+            listOf()
+        } else if (directoryIndex != null) {
+            (0 until directoryIndexResults.fileCount).map { directoryIndexResults.relativePath(it) }
+        } else {
+            steps.last().fileIds.map { indexedFiles[it].relativePath() }
+        }
+
+    private suspend fun stepsOf(newQueryString: String, lastQueryString: String, lastSteps: List<Step>): List<Step> {
+        val commonPrefixLength = lastQueryString.commonPrefixWith(newQueryString).length
+        val newSteps = lastSteps.subList(0, commonPrefixLength + 1).toMutableList()
+        for (i in commonPrefixLength until newQueryString.length) {
+            newSteps.add(extend(newSteps.last(), newQueryString[i]))
+        }
+        return newSteps
+    }
+
+    private suspend fun extend(step: Step, c: Char): Step {
+        val fileIds = IntArray(step.fileIds.size)
+        val cursors = arrayOfNulls<PrefixCursor>(step.fileIds.size)
+        var matching = 0
+        for (i in step.fileIds.indices) {
+            currentCoroutineContext().ensureActive()
+            val cursor = step.cursors[i].extendedBy(c) ?: continue
+            fileIds[matching] = step.fileIds[i]
+            cursors[matching++] = cursor
+        }
+        @Suppress("UNCHECKED_CAST")
+        return Step(fileIds.copyOf(matching), cursors.copyOf(matching) as Array<PrefixCursor>)
+    }
+}
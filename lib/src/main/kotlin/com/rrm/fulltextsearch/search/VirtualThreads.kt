@@ -0,0 +1,40 @@
+package com.rrm.fulltextsearch.search
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Starts a thread per task, using the virtual threads of JDK 21 when they are available. A virtual
+ * thread which blocks, e.g. waiting for the tasks it submitted, gives up its carrier thread rather
+ * than holding on to it, so work can block on other work without tying up a thread each time.
+ *
+ * The library is built for JDK 11, so the executor is looked up reflectively. On older JDKs, each
+ * task gets a daemon platform thread instead, which behaves the same but costs more per task.
+ */
+internal object VirtualThreads {
+    private val newVirtualThreadPerTaskExecutor = try {
+        Executors::class.java.getMethod("newVirtualThreadPerTaskExecutor")
+    } catch (e: NoSuchMethodException) {
+        null
+    }
+
+    /**
+     * Whether tasks run on virtual threads, i.e. whether this is running on JDK 21 or later.
+     */
+    val isSupported: Boolean
+        get() = newVirtualThreadPerTaskExecutor != null
+
+    /**
+     * @return An executor which starts a new thread for each task. The caller should shut it down
+     * once its tasks are done.
+     */
+    fun newThreadPerTaskExecutor(name: String): ExecutorService {
+        newVirtualThreadPerTaskExecutor?.let { return it.invoke(null) as ExecutorService }
+        val threadCount = AtomicInteger()
+        return Executors.newCachedThreadPool(ThreadFactory { task ->
+            Thread(task, "$name-${threadCount.getAndIncrement()}").apply { isDaemon = true }
+        })
+    }
+}
@@ -0,0 +1,68 @@
+package com.rrm.fulltextsearch.filesystem
+
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import kotlin.random.Random
+
+class BinaryContentDetectorTest {
+    private val detector = BinaryContentDetector(Charsets.UTF_8)
+
+    @Test
+    internal fun `text isn't binary`() {
+        assertFalse(looksBinary(detector, "fun main() = println(\"héllo, wörld € 😀\")\n".repeat(200).toByteArray()))
+    }
+
+    @Test
+    internal fun `empty content isn't binary`() {
+        assertFalse(looksBinary(detector, ByteArray(0)))
+    }
+
+    @Test
+    internal fun `content with a NUL byte is binary`() {
+        val bytes = "some text".toByteArray() + byteArrayOf(0) + "more text".toByteArray()
+
+        assertTrue(looksBinary(detector, bytes))
+    }
+
+    @Test
+    internal fun `content which is mostly malformed is binary`() {
+        // Random bytes without NULs, like those of compressed data.
+        val bytes = Random(42).nextBytes(4096).map { if (it == 0.toByte()) 1.toByte() else it }.toByteArray()
+
+        assertTrue(looksBinary(detector, bytes))
+    }
+
+    @Test
+    internal fun `text in another charset with a few malformed bytes isn't binary`() {
+        val bytes = "Le café où l'on mange une crème brûlée.\n".repeat(50).toByteArray(Charsets.ISO_8859_1)
+
+        assertFalse(looksBinary(detector, bytes))
+    }
+
+    @Test
+    internal fun `only looks at the first few KB`() {
+        val bytes = "text\n".repeat(1000).toByteArray() + byteArrayOf(0)
+
+        assertFalse(looksBinary(detector, bytes))
+    }
+
+    @Test
+    internal fun `doesn't count a char cut off at the end of the prefix as malformed`() {
+        val prefixLength = BinaryContentDetector.PREFIX_SIZE_IN_BYTES
+        val bytes = "€".repeat(prefixLength).toByteArray().copyOf(prefixLength)
+
+        assertFalse(looksBinary(detector, bytes))
+    }
+
+    @Test
+    internal fun `NUL bytes of UTF-16 text aren't a sign of binary content`() {
+        val bytes = "plain ASCII text in UTF-16\n".repeat(20).toByteArray(Charsets.UTF_16)
+
+        assertFalse(looksBinary(BinaryContentDetector(Charsets.UTF_16), bytes))
+    }
+
+    private fun looksBinary(detector: BinaryContentDetector, bytes: ByteArray) =
+        detector.looksBinary(ByteBuffer.wrap(bytes), bytes.size)
+}
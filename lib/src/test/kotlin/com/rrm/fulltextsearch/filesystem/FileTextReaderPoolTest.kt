@@ -0,0 +1,32 @@
+package com.rrm.fulltextsearch.filesystem
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import java.nio.file.Paths
+
+class FileTextReaderPoolTest {
+    @Test
+    internal fun `lends the same reader for one file after another`() {
+        val pool = FileTextReaderPool()
+        val files = Directory(Paths.get("src/test/resources/example-java-project")).files().toList()
+
+        val readers = files.map { file ->
+            pool.withReader { reader ->
+                assertEquals(file.readText(), reader.readText(file))
+                reader
+            }
+        }
+
+        readers.forEach { assertSame(readers.first(), it) }
+    }
+
+    @Test
+    internal fun `keeps at most the max number of idle readers`() {
+        val pool = FileTextReaderPool(maxIdleReaders = 2)
+
+        pool.withReader { pool.withReader { pool.withReader { } } }
+
+        assertEquals(2, pool.idleReaderCount())
+    }
+}
@@ -0,0 +1,130 @@
+package com.rrm.fulltextsearch.filesystem
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.io.File
+import java.nio.charset.CharacterCodingException
+import java.nio.charset.CodingErrorAction
+import java.nio.file.Paths
+
+class FileTextReaderTest {
+    @Test
+    internal fun `reads the same text as readText`() {
+        val file = Paths.get("src/test/resources/example-java-project/README.md").toFile()
+
+        assertEquals(file.readText(), FileTextReader().readText(file))
+    }
+
+    @Test
+    internal fun `reads one file after another with the same buffers`() {
+        val reader = FileTextReader()
+        val files = Directory(Paths.get("src/test/resources/example-java-project")).files().toList()
+
+        files.forEach { assertEquals(it.readText(), reader.readText(it)) }
+    }
+
+    @Test
+    internal fun `reads a file which is big enough to be mapped into memory`() {
+        val text = "abéc€\n".repeat(100_000)
+        val file = temporaryFileOf(text.toByteArray(Charsets.UTF_8))
+
+        assertEquals(text, FileTextReader().readText(file))
+    }
+
+    @Test
+    internal fun `reads the text in the given charset`() {
+        val text = "naïve café"
+        val file = temporaryFileOf(text.toByteArray(Charsets.ISO_8859_1))
+
+        assertEquals(text, FileTextReader(Charsets.ISO_8859_1).readText(file))
+    }
+
+    @Test
+    internal fun `replaces malformed input by default`() {
+        val file = temporaryFileOf(byteArrayOf('a'.code.toByte(), 0xff.toByte(), 'b'.code.toByte()))
+
+        assertEquals("a�b", FileTextReader().readText(file))
+    }
+
+    @Test
+    internal fun `reports malformed input if asked to`() {
+        val file = temporaryFileOf(byteArrayOf('a'.code.toByte(), 0xff.toByte(), 'b'.code.toByte()))
+
+        assertThrows<CharacterCodingException> {
+            FileTextReader(malformedInputAction = CodingErrorAction.REPORT).readText(file)
+        }
+    }
+
+    @Test
+    internal fun `reads an empty file`() {
+        assertEquals("", FileTextReader().readText(temporaryFileOf(ByteArray(0))))
+    }
+
+    @Test
+    internal fun `skips a binary file`() {
+        val file = Paths.get("src/test/resources/gradle-wrapper/gradle-wrapper.jar").toFile()
+
+        assertNull(FileTextReader().readTextUnlessBinary(file))
+    }
+
+    @Test
+    internal fun `skips a binary file which is big enough to be mapped into memory`() {
+        val file = temporaryFileOf(ByteArray(1024 * 1024) { (it % 7).toByte() })
+
+        assertNull(FileTextReader().readTextUnlessBinary(file))
+    }
+
+    @Test
+    internal fun `reads a text file which it was asked to skip if binary`() {
+        val reader = FileTextReader()
+        val files = Directory(Paths.get("src/test/resources/example-java-project")).files().toList()
+
+        files.forEach { assertEquals(it.readText(), reader.readTextUnlessBinary(it)) }
+    }
+
+    @Test
+    internal fun `reuses its buffers for the next file rather than allocating new ones`() {
+        val reader = FileTextReader()
+        reader.readText(temporaryFileOf("a".repeat(1000).toByteArray()))
+        val bytes = reader.keptByteBuffer()
+        val chars = reader.keptCharBuffer()
+
+        assertEquals("b".repeat(500), reader.readText(temporaryFileOf("b".repeat(500).toByteArray())))
+
+        assertSame(bytes, reader.keptByteBuffer())
+        assertSame(chars, reader.keptCharBuffer())
+    }
+
+    @Test
+    internal fun `reuses its char buffer for one mapped file after another`() {
+        val reader = FileTextReader()
+        val text = "abc\n".repeat(75_000)
+        reader.readText(temporaryFileOf(text.toByteArray()))
+        val chars = reader.keptCharBuffer()
+
+        assertEquals(text.uppercase(), reader.readText(temporaryFileOf(text.uppercase().toByteArray())))
+
+        assertSame(chars, reader.keptCharBuffer())
+    }
+
+    @Test
+    internal fun `doesn't keep a buffer which grew to fit a huge file`() {
+        val reader = FileTextReader()
+        reader.readText(temporaryFileOf("a".repeat(1000).toByteArray()))
+        val chars = reader.keptCharBuffer()
+        val hugeText = "b".repeat(FileTextReader.MAX_KEPT_BUFFER_SIZE_IN_BYTES)
+
+        assertEquals(hugeText, reader.readText(temporaryFileOf(hugeText.toByteArray())))
+
+        assertSame(chars, reader.keptCharBuffer())
+    }
+
+    private fun temporaryFileOf(bytes: ByteArray): File =
+        File.createTempFile("file-text-reader-test", ".txt").apply {
+            deleteOnExit()
+            writeBytes(bytes)
+        }
+}
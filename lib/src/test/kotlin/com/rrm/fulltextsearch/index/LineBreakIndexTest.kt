@@ -0,0 +1,38 @@
+package com.rrm.fulltextsearch.index
+
+import com.rrm.fulltextsearch.search.FileLine
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class LineBreakIndexTest {
+    @Test
+    internal fun `finds the line of each char`() {
+        val text = "first\n\nthird line\nlast"
+        val lineBreaks = LineBreakIndex.of(text)
+
+        assertEquals(FileLine(1, 1, "first"), lineBreaks.fileLineOf(0, text::substring))
+        assertEquals(FileLine(1, 6, "first"), lineBreaks.fileLineOf(5, text::substring))
+        assertEquals(FileLine(2, 1, ""), lineBreaks.fileLineOf(6, text::substring))
+        assertEquals(FileLine(3, 7, "third line"), lineBreaks.fileLineOf(13, text::substring))
+        assertEquals(FileLine(4, 4, "last"), lineBreaks.fileLineOf(21, text::substring))
+    }
+
+    @Test
+    internal fun `treats text without line breaks as one line`() {
+        val text = "no line breaks here"
+        val lineBreaks = LineBreakIndex.of(text)
+
+        assertEquals(0, lineBreaks.lineIndexOf(10))
+        assertEquals(0, lineBreaks.lineStartOf(10))
+        assertEquals(text.length, lineBreaks.lineEndOf(10))
+    }
+
+    @Test
+    internal fun `can index many lines`() {
+        val text = (0 until 1000).joinToString("\n") { "line $it" }
+        val lineBreaks = LineBreakIndex.of(text)
+
+        val offset = text.indexOf("line 537")
+        assertEquals(FileLine(538, 1, "line 537"), lineBreaks.fileLineOf(offset, text::substring))
+    }
+}
@@ -0,0 +1,67 @@
+package com.rrm.fulltextsearch.index
+
+import com.rrm.fulltextsearch.randominput.RandomInput.generateRandomString
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Assertions.fail
+import org.junit.jupiter.api.Test
+import java.io.File
+
+class QGramSummaryTest {
+    @Test
+    internal fun `never rules out a query string which occurs in the text`() {
+        repeat(200) {
+            val text = generateRandomString(maxLength = 300)
+            val summary = QGramSummary.of(text)
+
+            for (start in text.indices) {
+                for (end in start + 1..minOf(text.length, start + 8)) {
+                    val queryString = text.substring(start, end)
+                    if (!summary.mayContain(queryString)) {
+                        fail<Unit>("Ruled out '$queryString' in '$text'")
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    internal fun `rules out query strings with chars or bigrams which aren't in the text`() {
+        val summary = QGramSummary.of("fun main(args: Array<String>) {\n    println(\"hello\")\n}")
+
+        assertTrue(summary.mayContain("println"))
+        assertFalse(summary.mayContain("z"))
+        assertFalse(summary.mayContain("while"))
+        assertFalse(summary.mayContain("mainz"))
+    }
+
+    @Test
+    internal fun `grows with the distinct chars and bigrams of the text up to a limit`() {
+        // 500 distinct chars and 499 distinct bigrams, at eight bits each, round up to 8192 bits.
+        val distinctChars = String(CharArray(500) { 'a' + it })
+
+        assertEquals(64, QGramSummary.of("").sizeInBytes())
+        assertEquals(64, QGramSummary.of("abc").sizeInBytes())
+        assertEquals(64, QGramSummary.of("a".repeat(1_000_000)).sizeInBytes())
+        assertEquals(1024, QGramSummary.of(distinctChars).sizeInBytes())
+        assertEquals(1024, QGramSummary.of(distinctChars.repeat(100)).sizeInBytes())
+        assertEquals(16384, QGramSummary.of(String(CharArray(60_000) { 'a' + it })).sizeInBytes())
+    }
+
+    @Test
+    internal fun `rarely lets through a bigram which isn't in a realistic text`() {
+        val text = File("src/test/resources/example-java-project").walkTopDown()
+            .filter { it.isFile && (it.extension == "java" || it.extension == "md") }
+            .joinToString("\n") { it.readText() }
+        val summary = QGramSummary.of(text)
+
+        val printableChars = ' '..'~'
+        val absentBigrams = printableChars.flatMap { a -> printableChars.map { b -> "$a$b" } }
+            .filter { !text.contains(it) }
+        val falsePositiveRate = absentBigrams.count { summary.mayContain(it) }.toDouble() / absentBigrams.size
+
+        assertTrue(absentBigrams.size > 5000, "Only ${absentBigrams.size} bigrams are absent")
+        assertTrue(falsePositiveRate < 0.125, "The false positive rate was $falsePositiveRate")
+    }
+}
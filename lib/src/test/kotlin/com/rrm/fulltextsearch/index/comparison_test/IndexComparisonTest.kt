@@ -8,11 +8,15 @@ import com.rrm.fulltextsearch.filesystem.Directory
 import com.rrm.fulltextsearch.index.IndexedFile
 import com.rrm.fulltextsearch.index.naive.NaiveIndexedFile
 import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeIndexedFile
+import com.rrm.fulltextsearch.indexer.DirectoryIndexStrategy
 import com.rrm.fulltextsearch.indexer.IndexerStrategy
 import com.rrm.fulltextsearch.indexer.async.AsyncIndexingProgressListener
 import com.rrm.fulltextsearch.indexer.async.ParallelAsyncIndexer
+import com.rrm.fulltextsearch.indexer.sync.CorpusSyncIndexer
+import com.rrm.fulltextsearch.indexer.sync.ParallelSyncIndexer
 import com.rrm.fulltextsearch.randominput.RandomInput
 import com.rrm.fulltextsearch.search.IndexedDirectory
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
 import java.nio.file.Path
 import java.nio.file.Paths
@@ -39,6 +43,53 @@ class IndexComparisonTest {
         }
     }
 
+    @Test
+    internal fun `compare naive index to suffix array index`() {
+        val directory = Directory(Paths.get("src/test/resources/example-java-project"))
+        val suffixArrayIndex = ParallelSyncIndexer(IndexerStrategy.alwaysUseSuffixArrayIndex()).buildIndex(directory)
+        val naiveIndex = ParallelSyncIndexer(IndexerStrategy.alwaysUseNaiveIndex()).buildIndex(directory)
+
+        repeat(50) {
+            val queryTerm = RandomInput.generateRandomSearchQueryTerm()
+            val suffixArrayMatches = suffixArrayIndex.queryCaseSensitive(queryTerm)
+            val expectedMatches = naiveIndex.queryCaseSensitive(queryTerm)
+            QueryResultsComparisons.printQueryResultComparison(suffixArrayMatches, expectedMatches)
+            QueryResultsComparisons.assertSameMatches(queryTerm, suffixArrayMatches, expectedMatches)
+        }
+    }
+
+    @Test
+    internal fun `compare naive index to corpus index`() {
+        val directory = Directory(Paths.get("src/test/resources/example-java-project"))
+        val corpusIndex = CorpusSyncIndexer().buildIndex(directory)
+        val naiveIndex = ParallelSyncIndexer(IndexerStrategy.alwaysUseNaiveIndex()).buildIndex(directory)
+
+        repeat(50) {
+            val queryTerm = RandomInput.generateRandomSearchQueryTerm()
+            val corpusMatches = corpusIndex.queryCaseSensitive(queryTerm)
+            val expectedMatches = naiveIndex.queryCaseSensitive(queryTerm)
+            QueryResultsComparisons.printQueryResultComparison(corpusMatches, expectedMatches)
+            QueryResultsComparisons.assertSameMatches(queryTerm, corpusMatches, expectedMatches)
+        }
+    }
+
+    @Test
+    internal fun `compare naive index to trigram index`() {
+        val directory = Directory(Paths.get("src/test/resources/example-java-project"))
+        val trigramIndex = CorpusSyncIndexer(DirectoryIndexStrategy.alwaysUseTrigramIndex()).buildIndex(directory)
+        val naiveIndex = ParallelSyncIndexer(IndexerStrategy.alwaysUseNaiveIndex()).buildIndex(directory)
+
+        repeat(50) {
+            val queryTerm = RandomInput.generateRandomSearchQueryTerm()
+            val trigramMatches = trigramIndex.queryCaseSensitive(queryTerm)
+            val expectedMatches = naiveIndex.queryCaseSensitive(queryTerm)
+            QueryResultsComparisons.printQueryResultComparison(trigramMatches, expectedMatches)
+            QueryResultsComparisons.assertSameMatches(queryTerm, trigramMatches, expectedMatches)
+            assertEquals(naiveIndex.count(queryTerm), trigramIndex.count(queryTerm))
+            assertEquals(naiveIndex.filesContaining(queryTerm), trigramIndex.filesContaining(queryTerm))
+        }
+    }
+
     private suspend fun buildIndices(
         dirPath: Path,
         suffixTreeIndexer: ParallelAsyncIndexer,
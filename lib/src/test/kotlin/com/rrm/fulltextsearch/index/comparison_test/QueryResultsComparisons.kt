@@ -1,8 +1,29 @@
 package com.rrm.fulltextsearch.index.comparison_test
 
 import com.rrm.fulltextsearch.search.QueryMatch
+import org.junit.jupiter.api.Assertions.assertEquals
 
 object QueryResultsComparisons {
+    /**
+     * Asserts that the two lists have the same matches, by the path and offset of each, whatever
+     * order they were found in.
+     */
+    fun assertSameMatches(
+        queryString: String,
+        actualQueryMatches: List<QueryMatch>,
+        expectedQueryMatches: List<QueryMatch>
+    ) {
+        assertEquals(
+            pathsAndOffsetsOf(expectedQueryMatches),
+            pathsAndOffsetsOf(actualQueryMatches),
+            "The matches of '$queryString' differ"
+        )
+    }
+
+    private fun pathsAndOffsetsOf(queryMatches: List<QueryMatch>): List<Pair<String, Int>> =
+        queryMatches.map { Pair(it.fileRelativePath, it.offset) }
+            .sortedWith(compareBy({ it.first }, { it.second }))
+
     fun printQueryResultComparison(
         actualQueryMatches: List<QueryMatch>,
         expectedQueryMatches: List<QueryMatch>,
@@ -0,0 +1,100 @@
+package com.rrm.fulltextsearch.index.corpus
+
+import com.rrm.fulltextsearch.randominput.RandomInput.generateRandomString
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.hamcrest.Matchers.empty
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class CorpusIndexTest {
+    private val corpusIndex = CorpusIndex.construct(
+        listOf(
+            Pair("file-1.txt", "abracadabra"),
+            Pair("empty.txt", ""),
+            Pair("nested/file-2.txt", "cadabra\nabra"),
+            Pair("file-3.txt", "ab")
+        )
+    )
+
+    @Test
+    internal fun `finds matches in each file with file-local offsets`() {
+        assertThat(
+            corpusIndex.query("abra"), containsInAnyOrder(
+                QueryMatch("file-1.txt", 0),
+                QueryMatch("file-1.txt", 7),
+                QueryMatch("nested/file-2.txt", 3),
+                QueryMatch("nested/file-2.txt", 8)
+            )
+        )
+        assertEquals(4, corpusIndex.count("abra"))
+    }
+
+    @Test
+    internal fun `groups matches by file in order of offset`() {
+        val results = corpusIndex.queryResults("a")
+
+        assertEquals(11, results.size)
+        assertEquals(listOf(0, 2, 3), (0 until results.fileCount).map { results.fileId(it) })
+        assertArrayEquals(intArrayOf(0, 3, 5, 7, 10), results.offsets(0))
+        assertArrayEquals(intArrayOf(1, 3, 6, 8, 11), results.offsets(1))
+        assertArrayEquals(intArrayOf(0), results.offsets(2))
+    }
+
+    @Test
+    internal fun `doesn't find matches which span two files`() {
+        assertThat(corpusIndex.query("abraab"), empty())
+        assertThat(corpusIndex.query("abra${CorpusIndex.FILE_SEPARATOR}ab"), empty())
+        assertEquals(0, corpusIndex.count("abra${CorpusIndex.FILE_SEPARATOR}ab"))
+        assertThat(corpusIndex.query("${CorpusIndex.FILE_SEPARATOR}"), empty())
+    }
+
+    @Test
+    internal fun `can query and count one file`() {
+        assertThat(
+            corpusIndex.queryFile(2, "abra"), containsInAnyOrder(
+                QueryMatch("nested/file-2.txt", 3),
+                QueryMatch("nested/file-2.txt", 8)
+            )
+        )
+        assertEquals(1, corpusIndex.countInFile(3, "ab"))
+        assertEquals(0, corpusIndex.countInFile(1, "ab"))
+    }
+
+    @Test
+    internal fun `gets lines without running into neighbouring files`() {
+        assertEquals("abracadabra", corpusIndex.getLineOfChar(0, 5))
+        assertEquals("cadabra", corpusIndex.getLineOfChar(2, 0))
+        assertEquals("abra", corpusIndex.getLineOfChar(2, 9))
+        assertEquals("ab", corpusIndex.getLineOfChar(3, 1))
+        assertEquals(FileLine(2, 2, "abra"), corpusIndex.getFileLineOfChar(2, 9))
+        assertEquals(FileLine(1, 2, "ab"), corpusIndex.getFileLineOfChar(3, 1))
+    }
+
+    @Test
+    internal fun `lists the distinct files which contain a query string`() {
+        assertEquals(setOf("file-1.txt", "nested/file-2.txt", "file-3.txt"), corpusIndex.filesContaining("ab"))
+        assertEquals(setOf("file-1.txt", "nested/file-2.txt"), corpusIndex.filesContaining("cad"))
+        assertEquals(setOf<String>(), corpusIndex.filesContaining("abraab"))
+        assertEquals(setOf<String>(), corpusIndex.filesContaining("abra${CorpusIndex.FILE_SEPARATOR}ab"))
+    }
+
+    @Test
+    internal fun `lists the same files as a full query does`() {
+        val files = (1..50).map {
+            Pair("file-$it.txt", generateRandomString(alphabet = "abc", minLength = 0, maxLength = 40))
+        }
+        val randomCorpusIndex = CorpusIndex.construct(files)
+        repeat(500) {
+            val queryString = generateRandomString(alphabet = "abc", maxLength = 4)
+            assertEquals(
+                randomCorpusIndex.query(queryString).map { it.fileRelativePath }.toSet(),
+                randomCorpusIndex.filesContaining(queryString),
+                "Wrong files for query string '$queryString'"
+            )
+        }
+    }
+}
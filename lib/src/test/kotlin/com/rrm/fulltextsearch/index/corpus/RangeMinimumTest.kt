@@ -0,0 +1,22 @@
+package com.rrm.fulltextsearch.index.corpus
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class RangeMinimumTest {
+    @Test
+    internal fun `finds the minimum of every range`() {
+        val random = Random(42)
+        for (size in listOf(1, 31, 32, 33, 100, 300)) {
+            val values = IntArray(size) { random.nextInt(-50, 50) }
+            val rangeMinimum = RangeMinimum(values)
+            for (from in 0 until size) {
+                for (to in from + 1..size) {
+                    val expected = (from until to).minOf { values[it] }
+                    assertEquals(expected, values[rangeMinimum.positionOfMinimum(from, to)])
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.rrm.fulltextsearch.index.fmindex
+
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeFuzzTest
+
+/**
+ * The FM-index is checked against the naive index in the same way as the suffix trees.
+ */
+class FmIndexFuzzTest : SuffixTreeFuzzTest() {
+    override fun indexedFile(relativePath: String, fileContent: String): IndexedFile =
+        FmIndexIndexedFile(relativePath, fileContent, sampleRate = 4)
+}
@@ -0,0 +1,62 @@
+package com.rrm.fulltextsearch.index.fmindex
+
+import com.rrm.fulltextsearch.randominput.RandomInput.generateRandomString
+import com.rrm.fulltextsearch.search.QueryMatch
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.io.File
+
+internal class FmIndexIndexedFileTest {
+    @Test
+    internal fun `returns no matches for an empty file`() {
+        val indexedFile = FmIndexIndexedFile("some-file.txt", "")
+        assertEquals(listOf<QueryMatch>(), indexedFile.query("abc"))
+        assertEquals(listOf<QueryMatch>(), indexedFile.query(""))
+        assertEquals(0, indexedFile.count("abc"))
+    }
+
+    @Test
+    internal fun `can get line of query offset`() {
+        assertEquals(
+            "hello this is some text",
+            FmIndexIndexedFile("file.txt", "hello this is some text")
+                .getLineOfChar(5)
+        )
+        assertEquals(
+            "has three lines",
+            FmIndexIndexedFile("file.txt", "this\nhas three lines\nof text", sampleRate = 4)
+                .getLineOfChar(15)
+        )
+        assertEquals(
+            "starts with a line break",
+            FmIndexIndexedFile("file.txt", "\nstarts with a line break")
+                .getLineOfChar(5)
+        )
+        assertEquals(
+            "ends with a line break",
+            FmIndexIndexedFile("file.txt", "ends with a line break\n")
+                .getLineOfChar(5)
+        )
+    }
+
+    @Test
+    internal fun `can extract any substring of the input`() {
+        val input = generateRandomString(alphabet = "abc\n", minLength = 200, maxLength = 201)
+        val fmIndex = FmIndex.construct(input, sampleRate = 7)
+        for (start in 0..input.length step 13) {
+            for (end in start..input.length step 5) {
+                assertEquals(input.substring(start, end), fmIndex.substring(start, end))
+            }
+        }
+    }
+
+    @Test
+    internal fun `is smaller than the text it indexes`() {
+        val input = File("src/test/resources/example-java-project").walk()
+            .filter { it.isFile && it.name.endsWith(".java") }
+            .joinToString("\n") { it.readText() }
+        val fmIndex = FmIndex.construct(input)
+        assertTrue(fmIndex.sizeInBytes < input.length.toLong() * Char.SIZE_BYTES)
+    }
+}
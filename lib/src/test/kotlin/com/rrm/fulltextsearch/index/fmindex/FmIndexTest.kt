@@ -0,0 +1,14 @@
+package com.rrm.fulltextsearch.index.fmindex
+
+import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeTest
+
+/**
+ * An FM-index answers the same queries as a suffix tree, so it is run against the same tests. A
+ * small sample rate makes sure that locating suffixes has to step back to the samples.
+ */
+class FmIndexTest : SuffixTreeTest() {
+    override fun construct(input: CharSequence): SuffixTreeUnderTest {
+        val fmIndex = FmIndex.construct(input, sampleRate = 3)
+        return SuffixTreeUnderTest { fmIndex.offsetsOf(it) }
+    }
+}
@@ -4,6 +4,8 @@ package com.rrm.fulltextsearch.index.naive
 
 import com.rrm.fulltextsearch.search.QueryMatch
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 
 class NaiveIndexedFileTest {
@@ -62,6 +64,26 @@ class NaiveIndexedFileTest {
         assertEquals(setOf<Int>(), indexedFile.offsetsOf("rx"))
     }
 
+    @Test
+    internal fun `counts overlapping matches`() {
+        val indexedFile = NaiveIndexedFile("file.txt", "xaxaxbxaxa")
+        assertEquals(4, indexedFile.count("xa"))
+        assertEquals(3, indexedFile.count("xax"))
+        assertEquals(0, indexedFile.count("xx"))
+        assertEquals(0, indexedFile.count(""))
+    }
+
+    @Test
+    internal fun `finds as many matches as it counts on overlapping input`() {
+        val indexedFile = NaiveIndexedFile("file.txt", "aaaa")
+
+        assertEquals(listOf(0, 1, 2), indexedFile.query("aa").map { it.offset })
+        assertEquals(listOf(0, 1, 2), indexedFile.lazyQuery("aa").map { it.offset }.toList())
+        assertEquals(listOf(0, 1, 2), indexedFile.queryOffsets("aa").toList())
+        assertEquals(indexedFile.query("aa").size, indexedFile.count("aa"))
+        assertEquals(indexedFile.query("aaa").size, indexedFile.count("aaa"))
+    }
+
     @Test
     internal fun `can get line of query offset`() {
         assertEquals(
@@ -91,6 +113,15 @@ class NaiveIndexedFileTest {
         )
     }
 
+    @Test
+    internal fun `rules out the query strings which its summary doesn't have`() {
+        val indexedFile = NaiveIndexedFile("file.txt", "abracadabra")
+
+        assertTrue(indexedFile.mayContain("cad"))
+        assertFalse(indexedFile.mayContain("z"))
+        assertFalse(indexedFile.mayContain("abz"))
+    }
+
     private fun NaiveIndexedFile.offsetsOf(queryString: String): Set<Int> {
         return query(queryString).mapTo(mutableSetOf()) {
             it.offset
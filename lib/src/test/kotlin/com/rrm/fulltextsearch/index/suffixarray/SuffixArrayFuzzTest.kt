@@ -0,0 +1,12 @@
+package com.rrm.fulltextsearch.index.suffixarray
+
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeFuzzTest
+
+/**
+ * The suffix array index is checked against the naive index in the same way as the suffix trees.
+ */
+class SuffixArrayFuzzTest : SuffixTreeFuzzTest() {
+    override fun indexedFile(relativePath: String, fileContent: String): IndexedFile =
+        SuffixArrayIndexedFile(relativePath, fileContent)
+}
@@ -0,0 +1,13 @@
+package com.rrm.fulltextsearch.index.suffixarray
+
+import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeTest
+
+/**
+ * A suffix array answers the same queries as a suffix tree, so it is run against the same tests.
+ */
+class SuffixArrayTest : SuffixTreeTest() {
+    override fun construct(input: CharSequence): SuffixTreeUnderTest {
+        val suffixArray = SuffixArray.construct(input)
+        return SuffixTreeUnderTest { suffixArray.offsetsOf(it) }
+    }
+}
@@ -0,0 +1,43 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ChildEdgesTest {
+    @Test
+    internal fun `is empty when no edges have been added`() {
+        val edges = ChildEdges<String>()
+        assertTrue(edges.isEmpty())
+        assertEquals(null, edges['a'])
+    }
+
+    @Test
+    internal fun `can add and replace a few edges`() {
+        val edges = ChildEdges<String>()
+        edges['c'] = "c"
+        edges['a'] = "a"
+        edges['\u0000'] = "terminal"
+        edges['a'] = "replaced a"
+
+        assertEquals(3, edges.size)
+        assertEquals("replaced a", edges['a'])
+        assertEquals("c", edges['c'])
+        assertEquals("terminal", edges['\u0000'])
+        assertEquals(null, edges['b'])
+    }
+
+    @Test
+    internal fun `can hold many edges`() {
+        val edges = ChildEdges<String>()
+        val alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 \n\t\u0000{};"
+        alphabet.forEach { edges[it] = it.toString() }
+        edges['z'] = "replaced z"
+
+        assertEquals(alphabet.length, edges.size)
+        alphabet.filter { it != 'z' }.forEach { assertEquals(it.toString(), edges[it]) }
+        assertEquals("replaced z", edges['z'])
+        assertEquals(null, edges['£'])
+        assertEquals(alphabet.toSet(), edges.map { c, _ -> c }.toSet())
+    }
+}
@@ -0,0 +1,8 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+import com.rrm.fulltextsearch.index.IndexedFile
+
+class CompactSuffixTreeFuzzTest : SuffixTreeFuzzTest() {
+    override fun indexedFile(relativePath: String, fileContent: String): IndexedFile =
+        CompactSuffixTreeIndexedFile(relativePath, fileContent)
+}
@@ -0,0 +1,12 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+class CompactSuffixTreeTest : SuffixTreeTest() {
+    override fun construct(input: CharSequence): SuffixTreeUnderTest {
+        val suffixTree = CompactSuffixTree.ukkonenConstruction(input)
+        return object : SuffixTreeUnderTest {
+            override fun offsetsOf(queryString: String) = suffixTree.offsetsOf(queryString)
+
+            override fun toString() = suffixTree.toString()
+        }
+    }
+}
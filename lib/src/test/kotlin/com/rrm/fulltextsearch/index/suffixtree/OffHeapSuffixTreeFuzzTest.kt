@@ -0,0 +1,8 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+import com.rrm.fulltextsearch.index.IndexedFile
+
+class OffHeapSuffixTreeFuzzTest : SuffixTreeFuzzTest() {
+    override fun indexedFile(relativePath: String, fileContent: String): IndexedFile =
+        OffHeapSuffixTreeIndexedFile(relativePath, fileContent)
+}
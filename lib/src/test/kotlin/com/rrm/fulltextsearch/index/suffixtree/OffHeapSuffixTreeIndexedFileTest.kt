@@ -0,0 +1,51 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+import com.rrm.fulltextsearch.search.QueryMatch
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+internal class OffHeapSuffixTreeIndexedFileTest {
+    @Test
+    internal fun `returns no matches for an empty file`() {
+        val indexedFile = OffHeapSuffixTreeIndexedFile("some-file.txt", "")
+        assertEquals(listOf<QueryMatch>(), indexedFile.query("abc"))
+        assertEquals(listOf<QueryMatch>(), indexedFile.query(""))
+    }
+
+    @Test
+    internal fun `can get line of query offset`() {
+        assertEquals(
+            "hello this is some text",
+            OffHeapSuffixTreeIndexedFile("file.txt", "hello this is some text")
+                .getLineOfChar(5)
+        )
+        assertEquals(
+            "has three lines",
+            OffHeapSuffixTreeIndexedFile("file.txt", "this\nhas three lines\nof text")
+                .getLineOfChar(15)
+        )
+        assertEquals(
+            "starts with a line break",
+            OffHeapSuffixTreeIndexedFile("file.txt", "\nstarts with a line break")
+                .getLineOfChar(5)
+        )
+        assertEquals(
+            "ends with a line break",
+            OffHeapSuffixTreeIndexedFile("file.txt", "ends with a line break\n")
+                .getLineOfChar(5)
+        )
+    }
+
+    @Test
+    internal fun `can't be queried once it has been closed`() {
+        val indexedFile = OffHeapSuffixTreeIndexedFile("file.txt", "abracadabra")
+        assertEquals(setOf(1, 8), indexedFile.query("bra").map { it.offset }.toSet())
+
+        indexedFile.close()
+        indexedFile.close()
+
+        assertThrows<IllegalStateException> { indexedFile.query("bra") }
+        assertThrows<IllegalStateException> { indexedFile.getLineOfChar(1) }
+    }
+}
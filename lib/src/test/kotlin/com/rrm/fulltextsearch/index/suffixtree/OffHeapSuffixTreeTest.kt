@@ -0,0 +1,8 @@
+package com.rrm.fulltextsearch.index.suffixtree
+
+class OffHeapSuffixTreeTest : SuffixTreeTest() {
+    override fun construct(input: CharSequence): SuffixTreeUnderTest {
+        val suffixTree = OffHeapSuffixTree.ukkonenConstruction(input)
+        return SuffixTreeUnderTest { suffixTree.offsetsOf(it) }
+    }
+}
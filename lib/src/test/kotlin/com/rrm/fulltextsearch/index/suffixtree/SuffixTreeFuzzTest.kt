@@ -2,13 +2,22 @@
 
 package com.rrm.fulltextsearch.index.suffixtree
 
+import com.rrm.fulltextsearch.index.IndexedFile
 import com.rrm.fulltextsearch.index.comparison_test.QueryResultsComparisons
 import com.rrm.fulltextsearch.index.naive.NaiveIndexedFile
 import com.rrm.fulltextsearch.randominput.RandomInput.generateRandomString
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.fail
 import org.junit.jupiter.api.Test
 
-class SuffixTreeFuzzTest {
+/**
+ * These tests run against [SuffixTreeIndexedFile]. Other suffix tree based indexes can be run
+ * against the same tests by extending this class and overriding [indexedFile].
+ */
+open class SuffixTreeFuzzTest {
+    protected open fun indexedFile(relativePath: String, fileContent: String): IndexedFile =
+        SuffixTreeIndexedFile(relativePath, fileContent)
+
     @Test
     internal fun `send random input and assert that the search results are correct`() {
         repeat(1000) {
@@ -20,9 +29,9 @@ class SuffixTreeFuzzTest {
             )
             val naiveIndexedFile = NaiveIndexedFile("some-file.txt", fileContent)
 
-            fun getSuffixTreeIndexedFile(): SuffixTreeIndexedFile {
+            fun getSuffixTreeIndexedFile(): IndexedFile {
                 try {
-                    return SuffixTreeIndexedFile("some-file.txt", fileContent)
+                    return indexedFile("some-file.txt", fileContent)
                 } catch (e: Exception) {
                     println("Fails for file content='$fileContent'")
                     throw e
@@ -52,6 +61,8 @@ class SuffixTreeFuzzTest {
                     suffixTreeIndexedFile
                 )
             }
+
+            suffixTreeIndexedFile.close()
         }
     }
 
@@ -65,7 +76,7 @@ class SuffixTreeFuzzTest {
         queryString: String
     ) {
         val naiveIndexedFile = NaiveIndexedFile("some-file.txt", fileContent)
-        val suffixTreeIndexedFile = SuffixTreeIndexedFile("some-file.txt", fileContent)
+        val suffixTreeIndexedFile = indexedFile("some-file.txt", fileContent)
         assertQueryResultsMatch(fileContent, queryString, naiveIndexedFile, suffixTreeIndexedFile)
     }
 
@@ -73,7 +84,7 @@ class SuffixTreeFuzzTest {
         fileContent: String,
         queryString: String,
         naiveIndexedFile: NaiveIndexedFile,
-        suffixTreeIndexedFile: SuffixTreeIndexedFile
+        suffixTreeIndexedFile: IndexedFile
     ) {
         val actualQueryResults = suffixTreeIndexedFile.query(queryString)
         val expectedQueryResults = naiveIndexedFile.lookaheadQuery(queryString)
@@ -88,5 +99,10 @@ class SuffixTreeFuzzTest {
                             "Query string: '$queryString'\n"
                 )
             })
+        assertEquals(
+            expectedQueryResults.size,
+            suffixTreeIndexedFile.count(queryString),
+            "Wrong count for file content '$fileContent' and query string '$queryString'"
+        )
     }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.rrm.fulltextsearch.index.suffixtree
 
+import com.rrm.fulltextsearch.index.PrefixCursor
 import com.rrm.fulltextsearch.search.QueryMatch
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
 import org.junit.jupiter.api.Test
 
 internal class SuffixTreeIndexedFileTest {
@@ -47,4 +49,22 @@ internal class SuffixTreeIndexedFileTest {
                 .getLineOfChar(5)
         )
     }
-}
\ No newline at end of file
+
+    @Test
+    internal fun `extending a prefix cursor finds the same matches as querying from scratch`() {
+        val fileText = "abracadabra\nabracadabra cabbage"
+        val indexedFile = SuffixTreeIndexedFile("file.txt", fileText)
+
+        for (start in fileText.indices) {
+            var cursor: PrefixCursor? = indexedFile.prefixCursor()
+            for (end in start until fileText.length) {
+                cursor = cursor!!.extendedBy(fileText[end])
+                val queryString = fileText.substring(start, end + 1)
+                assertEquals(indexedFile.queryOffsets(queryString).sorted(), cursor!!.offsets().sorted())
+            }
+        }
+        assertNull(indexedFile.prefixCursor().extendedBy('a')!!.extendedBy('x'))
+        assertNull(indexedFile.prefixCursor().extendedBy('z'))
+        assertEquals(0, indexedFile.prefixCursor().offsets().size)
+    }
+}
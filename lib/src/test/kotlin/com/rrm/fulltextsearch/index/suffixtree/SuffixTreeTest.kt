@@ -6,7 +6,23 @@ import com.rrm.fulltextsearch.randominput.RandomInput
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
 
-class SuffixTreeTest {
+/**
+ * These tests run against [SuffixTree]. Other suffix tree implementations can be run against the
+ * same tests by extending this class and overriding [construct].
+ */
+open class SuffixTreeTest {
+    fun interface SuffixTreeUnderTest {
+        fun offsetsOf(queryString: String): Set<Int>
+    }
+
+    protected open fun construct(input: CharSequence): SuffixTreeUnderTest {
+        val suffixTree = SuffixTree.ukkonenConstruction(input)
+        return object : SuffixTreeUnderTest {
+            override fun offsetsOf(queryString: String) = suffixTree.offsetsOf(queryString)
+
+            override fun toString() = suffixTree.toString()
+        }
+    }
 
     @Test
     internal fun `constructs simple suffix tree with only leaf nodes`() {
@@ -108,8 +124,26 @@ class SuffixTreeTest {
         assertSuffixTreeIsCorrectlyConstructed("xxyxxaxxa$")
     }
 
-    private fun suffixTree(input: String): SuffixTree {
-        val suffixTree = SuffixTree.ukkonenConstruction(input)
+    @Test
+    internal fun `can construct a suffix tree for a long run of one character`() {
+        val input = "x".repeat(100000)
+        val suffixTree = construct(input)
+        assertEquals(setOf(0), suffixTree.offsetsOf(input))
+        assertEquals(setOf(0, 1), suffixTree.offsetsOf(input.substring(1)))
+        assertEquals((0 until input.length).toSet(), suffixTree.offsetsOf("x"))
+    }
+
+    @Test
+    internal fun `can construct a suffix tree from a char buffer`() {
+        val input = "xyzxzyxy$"
+        assertSuffixTreeIsCorrectlyConstructed(
+            input,
+            construct(StringBuilder(input))
+        )
+    }
+
+    private fun suffixTree(input: String): SuffixTreeUnderTest {
+        val suffixTree = construct(input)
         println("\nSuffix Tree for '$input': $suffixTree")
         return suffixTree
     }
@@ -122,7 +156,7 @@ class SuffixTreeTest {
 
     private fun assertSuffixTreeIsCorrectlyConstructed(
         input: String,
-        suffixTree: SuffixTree
+        suffixTree: SuffixTreeUnderTest
     ) {
         fun assertQueryIsCorrect(queryString: String) {
             fun expectedIndices(): Set<Int> {
@@ -0,0 +1,101 @@
+package com.rrm.fulltextsearch.index.trigram
+
+import com.rrm.fulltextsearch.index.comparison_test.QueryResultsComparisons.assertSameMatches
+import com.rrm.fulltextsearch.index.naive.NaiveIndexedFile
+import com.rrm.fulltextsearch.randominput.RandomInput.generateRandomString
+import com.rrm.fulltextsearch.search.FileLine
+import com.rrm.fulltextsearch.search.QueryMatch
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class TrigramIndexTest {
+    private val trigramIndex = TrigramIndex.construct(
+        listOf(
+            Pair("file-1.txt", "abracadabra"),
+            Pair("empty.txt", ""),
+            Pair("nested/file-2.txt", "cadabra\nabra"),
+            Pair("file-3.txt", "ab")
+        )
+    )
+
+    @Test
+    internal fun `finds matches in each file`() {
+        assertThat(
+            trigramIndex.lazyQuery("abra").toList(), containsInAnyOrder(
+                QueryMatch("file-1.txt", 0),
+                QueryMatch("file-1.txt", 7),
+                QueryMatch("nested/file-2.txt", 3),
+                QueryMatch("nested/file-2.txt", 8)
+            )
+        )
+        assertEquals(4, trigramIndex.count("abra"))
+        assertEquals(setOf("file-1.txt", "nested/file-2.txt"), trigramIndex.filesContaining("abra"))
+    }
+
+    @Test
+    internal fun `groups matches by file in order of offset`() {
+        val results = trigramIndex.queryResults("a")
+
+        assertEquals(11, results.size)
+        assertEquals(listOf(0, 2, 3), (0 until results.fileCount).map { results.fileId(it) })
+        assertArrayEquals(intArrayOf(0, 3, 5, 7, 10), results.offsets(0))
+        assertArrayEquals(intArrayOf(1, 3, 6, 8, 11), results.offsets(1))
+        assertArrayEquals(intArrayOf(0), results.offsets(2))
+    }
+
+    @Test
+    internal fun `rules out the files missing a trigram of the query string`() {
+        assertTrue(trigramIndex.mayContainInFile(0, "bracad"))
+        assertFalse(trigramIndex.mayContainInFile(2, "bracad"))
+        assertFalse(trigramIndex.mayContainInFile(3, "abr"))
+        assertEquals(0, trigramIndex.queryResults("xyz").size)
+        assertEquals(0, trigramIndex.count("abraab"))
+    }
+
+    @Test
+    internal fun `skips the candidate files it hasn't verified by the deadline`() {
+        val pastDeadline = trigramIndex.queryResults("abra", System.nanoTime())
+        val farDeadline = trigramIndex.queryResults("abra", System.nanoTime() + 10_000_000_000L)
+
+        // The two files without 'abr' are ruled out without being verified.
+        assertEquals(0, pastDeadline.results.size)
+        assertEquals(2, pastDeadline.filesCompleted)
+        assertEquals(2, pastDeadline.filesSkipped)
+        assertEquals(4, farDeadline.results.size)
+        assertEquals(4, farDeadline.filesCompleted)
+        assertFalse(farDeadline.isTruncated)
+    }
+
+    @Test
+    internal fun `gets the line of a match from a view of its file`() {
+        val indexedFile = trigramIndex.indexedFiles()[2]
+
+        assertEquals("nested/file-2.txt", indexedFile.relativePath())
+        assertEquals(
+            listOf(QueryMatch("nested/file-2.txt", 3), QueryMatch("nested/file-2.txt", 8)),
+            indexedFile.query("abra")
+        )
+        assertEquals(FileLine(2, 2, "abra"), indexedFile.getFileLineOfChar(9))
+    }
+
+    @Test
+    internal fun `finds the same matches as the naive index`() {
+        repeat(100) {
+            val files = (0 until 5).map { Pair("file-$it.txt", generateRandomString(alphabet = "abcd", maxLength = 200)) }
+            val index = TrigramIndex.construct(files)
+
+            repeat(20) {
+                val queryString = generateRandomString(alphabet = "abcd", maxLength = 5)
+                // The naive index finds overlapping matches, as this one does.
+                val expected = files.flatMap { NaiveIndexedFile(it.first, it.second).query(queryString) }
+                assertSameMatches(queryString, index.queryResults(queryString).toQueryMatches(), expected)
+                assertEquals(expected.size, index.count(queryString), "For '$queryString'")
+            }
+        }
+    }
+}
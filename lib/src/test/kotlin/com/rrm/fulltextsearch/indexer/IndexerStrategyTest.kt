@@ -1,17 +1,21 @@
 package com.rrm.fulltextsearch.indexer
 
 import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.index.fmindex.FmIndexIndexedFile
 import com.rrm.fulltextsearch.index.naive.NaiveIndexedFile
 import com.rrm.fulltextsearch.index.none.NoSearchIndexedFile
 import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeIndexedFile
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
+import java.io.File
+import java.nio.file.Files
 import java.nio.file.Paths
 
 class IndexerStrategyTest {
     @Test
     internal fun `default indexer strategy doesn't index jar files`() {
-        val indexedFile = IndexerStrategy.default().buildIndexFor(
+        val indexedFile = IndexerStrategy.default().readAndBuildIndexFor(
             Directory(Paths.get("src/test/resources/gradle-wrapper")),
             Paths.get("src/test/resources/gradle-wrapper/my-program.jar").toFile()
         )
@@ -21,7 +25,7 @@ class IndexerStrategyTest {
 
     @Test
     internal fun `default indexer strategy uses suffix tree index for files smaller than the threshold`() {
-        val indexedFile = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 1000).buildIndexFor(
+        val indexedFile = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 1000).readAndBuildIndexFor(
             Directory(Paths.get("src/test/resources/one-file")),
             Paths.get("src/test/resources/one-file/file.txt").toFile()
         )
@@ -31,11 +35,69 @@ class IndexerStrategyTest {
 
     @Test
     internal fun `default indexer strategy uses naive index for files larger than the threshold`() {
-        val indexedFile = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 20).buildIndexFor(
+        val indexedFile = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 20).readAndBuildIndexFor(
             Directory(Paths.get("src/test/resources/one-file")),
             Paths.get("src/test/resources/one-file/file.txt").toFile()
         )
 
         assertTrue(indexedFile is NaiveIndexedFile)
     }
-}
\ No newline at end of file
+
+    @Test
+    internal fun `default indexer strategy uses FM-index for files larger than the FM-index threshold`() {
+        val indexedFile = IndexerStrategy.default(
+            suffixTreeMaxCharsThreshold = 10,
+            fmIndexMinCharsThreshold = 20
+        ).readAndBuildIndexFor(
+            Directory(Paths.get("src/test/resources/one-file")),
+            Paths.get("src/test/resources/one-file/file.txt").toFile()
+        )
+
+        assertTrue(indexedFile is FmIndexIndexedFile)
+    }
+
+    @Test
+    internal fun `default indexer strategy estimates no work for files which it doesn't read`() {
+        assertEquals(0L, IndexerStrategy.default().indexingPolicy.estimatedCostOf("gradle-wrapper.jar", 59203))
+    }
+
+    @Test
+    internal fun `estimates more work per char for a suffix tree than for a naive index`() {
+        val indexingPolicy = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 1000).indexingPolicy
+
+        val suffixTreeCost = indexingPolicy.estimatedCostOf("small.txt", 1000)
+        val naiveIndexCost = indexingPolicy.estimatedCostOf("big.txt", 2000)
+
+        assertTrue(suffixTreeCost > naiveIndexCost)
+        assertTrue(
+            IndexerStrategy.alwaysUseSuffixTreeIndex().indexingPolicy.estimatedCostOf("file.txt", 1000) >
+                    IndexerStrategy.alwaysUseSuffixArrayIndex().indexingPolicy.estimatedCostOf("file.txt", 1000)
+        )
+    }
+
+    @Test
+    internal fun `estimates the memory of the index as well as of the text`() {
+        val indexingPolicy = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 1000).indexingPolicy
+
+        assertTrue(indexingPolicy.estimatedMemoryOf("small.txt", 1000) > 2 * 1000)
+        assertTrue(indexingPolicy.estimatedMemoryOf("small.txt", 1000) > indexingPolicy.estimatedMemoryOf("big.txt", 2000))
+        assertEquals(0L, indexingPolicy.estimatedMemoryOf("gradle-wrapper.jar", 59203))
+        assertTrue(
+            IndexerStrategy.alwaysUseSuffixTreeIndex().indexingPolicy.estimatedMemoryOf("file.txt", 1000) >
+                    IndexerStrategy.alwaysUseFmIndex().indexingPolicy.estimatedMemoryOf("file.txt", 1000)
+        )
+    }
+
+    @Test
+    internal fun `default indexer strategy doesn't index binary files whatever their extension`() {
+        val directory = Files.createTempDirectory("indexer-strategy-test").toFile().apply { deleteOnExit() }
+        val classFile = File(directory, "Main.class").apply {
+            deleteOnExit()
+            writeBytes(byteArrayOf(0xca.toByte(), 0xfe.toByte(), 0xba.toByte(), 0xbe.toByte(), 0, 0, 0, 55))
+        }
+
+        val indexedFile = IndexerStrategy.default().readAndBuildIndexFor(Directory(directory.toPath()), classFile)
+
+        assertTrue(indexedFile is NoSearchIndexedFile)
+    }
+}
@@ -0,0 +1,37 @@
+package com.rrm.fulltextsearch.indexer
+
+import com.rrm.fulltextsearch.filesystem.Directory
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.nio.file.Paths
+
+class IndexingScheduleTest {
+    private val directory = Directory(Paths.get("src/test/resources/example-java-project"))
+
+    @Test
+    internal fun `schedules every file of the directory once`() {
+        val schedule = IndexingSchedule.largestFirst(directory, IndexerStrategy.default())
+
+        assertEquals(directory.files().map { it.path }.sorted().toList(), schedule.map { it.path }.sorted())
+    }
+
+    @Test
+    internal fun `schedules the files from the most to the least work to index`() {
+        val indexerStrategy = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 5000)
+
+        val schedule = IndexingSchedule.largestFirst(directory, indexerStrategy)
+
+        val indexingPolicy = indexerStrategy.indexingPolicy
+        val costs = schedule.map { indexingPolicy.estimatedCostOf(directory.relativePathTo(it.path), it.length()) }
+        assertEquals(costs.sortedDescending(), costs)
+        // README.md is the biggest file, but it's over the threshold, so it gets a naive index,
+        // which costs a tenth as much per char as a suffix tree. The suffix trees of the smaller
+        // kochcurve4Recursions.txt and CanvasRows.java are therefore more work, and come first.
+        assertEquals("kochcurve4Recursions.txt", schedule.first().name)
+        val positionOfReadme = schedule.indexOfFirst { it.name == "README.md" }
+        val positionOfCanvasRows = schedule.indexOfFirst { it.name == "CanvasRows.java" }
+        assertTrue(positionOfCanvasRows < positionOfReadme, "CanvasRows.java was at $positionOfCanvasRows")
+        assertEquals(schedule.maxOf { it.length() }, schedule[positionOfReadme].length())
+    }
+}
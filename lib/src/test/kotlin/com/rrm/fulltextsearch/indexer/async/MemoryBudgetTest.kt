@@ -0,0 +1,39 @@
+package com.rrm.fulltextsearch.indexer.async
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Test
+
+class MemoryBudgetTest {
+    @Test
+    internal fun `waits for room in the budget`() = runBlocking {
+        val memoryBudget = MemoryBudget(100)
+        memoryBudget.reserve(60)
+
+        val waiting = async { memoryBudget.reserve(60) }
+        delay(50)
+        assertFalse(waiting.isCompleted)
+        assertEquals(60, memoryBudget.bytesInUse())
+
+        memoryBudget.release(60)
+        waiting.await()
+        assertEquals(60, memoryBudget.bytesInUse())
+    }
+
+    @Test
+    internal fun `lets a reservation bigger than the budget through once nothing else is using it`() = runBlocking {
+        val memoryBudget = MemoryBudget(100)
+        memoryBudget.reserve(10)
+
+        val waiting = async { memoryBudget.reserve(1000) }
+        delay(50)
+        assertFalse(waiting.isCompleted)
+
+        memoryBudget.release(10)
+        waiting.await()
+        assertEquals(1000, memoryBudget.bytesInUse())
+    }
+}
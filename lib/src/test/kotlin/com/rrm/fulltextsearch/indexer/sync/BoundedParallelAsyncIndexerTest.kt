@@ -0,0 +1,23 @@
+package com.rrm.fulltextsearch.indexer.sync
+
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.async.IndexingPipelineConfig
+import com.rrm.fulltextsearch.indexer.async.ParallelAsyncIndexer
+
+/**
+ * Runs the pipeline with one coroutine per stage, no room in the channels, and a memory budget
+ * which is smaller than any file, so every file has to wait for the one before it.
+ */
+class BoundedParallelAsyncIndexerTest : SyncFullTextSearchTest() {
+    override fun indexerUnderTest() = indexerUnderTest(IndexerStrategy.default())
+
+    override fun indexerUnderTest(indexerStrategy: IndexerStrategy) = ParallelAsyncIndexer(
+        indexerStrategy,
+        IndexingPipelineConfig(
+            readConcurrency = 1,
+            buildConcurrency = 1,
+            channelCapacity = 0,
+            memoryBudgetInBytes = 1
+        )
+    )
+}
@@ -0,0 +1,24 @@
+package com.rrm.fulltextsearch.indexer.sync
+
+import com.rrm.fulltextsearch.filesystem.Directory
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.nio.file.Files
+
+class CorpusSyncIndexerTest : SyncFullTextSearchTest() {
+    override fun indexerUnderTest() = CorpusSyncIndexer()
+
+    @Test
+    internal fun `reads the files in the given charset`() {
+        val directory = Files.createTempDirectory("corpus-sync-indexer-test").toFile().apply { deleteOnExit() }
+        File(directory, "file.txt").apply {
+            deleteOnExit()
+            writeBytes("naïve café".toByteArray(Charsets.ISO_8859_1))
+        }
+
+        val indexedDirectory = CorpusSyncIndexer(charset = Charsets.ISO_8859_1).buildIndex(Directory(directory.toPath()))
+
+        assertEquals(1, indexedDirectory.count("café"))
+    }
+}
@@ -1,7 +1,10 @@
 package com.rrm.fulltextsearch.indexer.sync
 
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
 import com.rrm.fulltextsearch.indexer.async.ParallelAsyncIndexer
 
 class ParallelAsyncIndexerTest : SyncFullTextSearchTest() {
     override fun indexerUnderTest() = ParallelAsyncIndexer()
+
+    override fun indexerUnderTest(indexerStrategy: IndexerStrategy) = ParallelAsyncIndexer(indexerStrategy)
 }
\ No newline at end of file
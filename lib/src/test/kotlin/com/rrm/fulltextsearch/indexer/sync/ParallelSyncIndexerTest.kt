@@ -1,5 +1,9 @@
 package com.rrm.fulltextsearch.indexer.sync
 
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+
 class ParallelSyncIndexerTest : SyncFullTextSearchTest() {
     override fun indexerUnderTest() = ParallelSyncIndexer()
+
+    override fun indexerUnderTest(indexerStrategy: IndexerStrategy) = ParallelSyncIndexer(indexerStrategy)
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.rrm.fulltextsearch.indexer.sync
 
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+
 class SerialSyncIndexerTest : SyncFullTextSearchTest() {
     override fun indexerUnderTest() = SerialSyncIndexer()
+
+    override fun indexerUnderTest(indexerStrategy: IndexerStrategy) = SerialSyncIndexer(indexerStrategy)
 }
\ No newline at end of file
@@ -4,18 +4,31 @@ import kotlinx.coroutines.runBlocking
 import org.hamcrest.CoreMatchers
 import org.hamcrest.CoreMatchers.hasItems
 import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.greaterThanOrEqualTo
 import org.hamcrest.Matchers.hasSize
 import com.rrm.fulltextsearch.filesystem.Directory
 import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.search.FileLine
 import com.rrm.fulltextsearch.search.IndexedDirectory
 import com.rrm.fulltextsearch.search.QueryMatch
+import org.junit.jupiter.api.Assumptions.assumeTrue
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
 import java.nio.file.Paths
 import java.util.Collections.synchronizedList
+import java.util.concurrent.atomic.AtomicInteger
 
 abstract class SyncFullTextSearchTest {
     abstract fun indexerUnderTest(): SyncIndexer
 
+    /**
+     * The indexer under test with the given strategy, or null if it doesn't index the files one by
+     * one with an [IndexerStrategy], in which case the tests which need it are skipped.
+     */
+    open fun indexerUnderTest(indexerStrategy: IndexerStrategy): SyncIndexer? = null
+
     @Test
     internal fun `can search for a unique match in one file`() = runBlocking {
         val indexedDirectory: IndexedDirectory = indexerUnderTest()
@@ -83,6 +96,35 @@ abstract class SyncFullTextSearchTest {
         )
     }
 
+    @Test
+    internal fun `gets the line number and column of a match`() = runBlocking {
+        val indexedDirectory: IndexedDirectory = indexerUnderTest()
+            .buildIndex(Directory(Paths.get("src/test/resources/one-file")))
+
+        assertThat(
+            indexedDirectory.correspondingFileLineWithPosition(QueryMatch("file.txt", 98)),
+            equalTo(
+                FileLine(
+                    2,
+                    26,
+                    "strings like it. It also contains plenty of whitespace, and words with common"
+                )
+            )
+        )
+    }
+
+    @Test
+    internal fun `can limit the number of matches`() = runBlocking {
+        val indexedDirectory: IndexedDirectory = indexerUnderTest()
+            .buildIndex(Directory(Paths.get("src/test/resources/nested-files")))
+
+        val allQueryMatches = indexedDirectory.queryCaseSensitive("file")
+        val someQueryMatches = indexedDirectory.queryCaseSensitive("file", limit = 2)
+
+        assertThat(someQueryMatches, hasSize(2))
+        assertThat(allQueryMatches, hasItems(*someQueryMatches.toTypedArray()))
+    }
+
     @Test
     internal fun `reports on each new indexed file`() = runBlocking {
         val indexedFileNames = synchronizedList(mutableListOf<String>())
@@ -104,4 +146,34 @@ abstract class SyncFullTextSearchTest {
             )
         )
     }
+
+    @Test
+    internal fun `closes the indexes already built when a file fails to index`() {
+        val builtFiles = synchronizedList(mutableListOf<String>())
+        val closedFiles = synchronizedList(mutableListOf<String>())
+        val calls = AtomicInteger()
+        val failingStrategy = IndexerStrategy { rootDirectory, file, fileText ->
+            if (calls.incrementAndGet() == 3) {
+                // The files started before this one are given time to finish being built.
+                Thread.sleep(20)
+                throw IllegalStateException("Can't index ${file.name}")
+            }
+            val indexedFile = IndexerStrategy.alwaysUseNaiveIndex().buildIndexFor(rootDirectory, file, fileText)
+            builtFiles.add(indexedFile.relativePath())
+            object : IndexedFile by indexedFile {
+                override fun close() {
+                    closedFiles.add(indexedFile.relativePath())
+                }
+            }
+        }
+        val indexer = indexerUnderTest(failingStrategy)
+        assumeTrue(indexer != null, "The indexer doesn't use an IndexerStrategy")
+
+        assertThrows<IllegalStateException> {
+            indexer!!.buildIndex(Directory(Paths.get("src/test/resources/example-java-project")))
+        }
+
+        assertThat(builtFiles.size, greaterThanOrEqualTo(2))
+        assertThat(closedFiles.sorted(), equalTo(builtFiles.sorted()))
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.rrm.fulltextsearch.indexer.sync
+
+import kotlinx.coroutines.runBlocking
+import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.indexer.DirectoryIndexStrategy
+import com.rrm.fulltextsearch.indexer.async.AsyncIndexingProgressListener
+import com.rrm.fulltextsearch.search.IndexedDirectory
+import com.rrm.fulltextsearch.search.QueryMatch
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.nio.file.Paths
+
+class TrigramSyncIndexerTest : SyncFullTextSearchTest() {
+    override fun indexerUnderTest() = CorpusSyncIndexer(DirectoryIndexStrategy.alwaysUseTrigramIndex())
+
+    @Test
+    internal fun `can build the index asynchronously`() {
+        var builtDirectory: IndexedDirectory? = null
+        val indexedFiles = mutableListOf<String>()
+        runBlocking {
+            indexerUnderTest().buildIndexAsync(
+                Directory(Paths.get("src/test/resources/two-files")),
+                object : AsyncIndexingProgressListener {
+                    override fun onNewFileIndexed(indexedFile: IndexedFile) {
+                        indexedFiles.add(indexedFile.relativePath())
+                    }
+
+                    override fun onIndexingCompleted(indexedDirectory: IndexedDirectory) {
+                        builtDirectory = indexedDirectory
+                    }
+                }
+            ).join()
+        }
+
+        assertEquals(listOf("file-1.txt", "file-2.txt"), indexedFiles.sorted())
+        assertEquals(
+            setOf(QueryMatch("file-1.txt", 169), QueryMatch("file-2.txt", 56)),
+            builtDirectory!!.queryCaseSensitive("this").toSet()
+        )
+    }
+}
@@ -0,0 +1,68 @@
+package com.rrm.fulltextsearch.indexer.sync
+
+import com.rrm.fulltextsearch.filesystem.Directory
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.IndexingSchedule
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.nio.file.Paths
+import java.util.concurrent.atomic.AtomicInteger
+
+class VirtualThreadSyncIndexerTest : SyncFullTextSearchTest() {
+    override fun indexerUnderTest() = VirtualThreadSyncIndexer()
+
+    override fun indexerUnderTest(indexerStrategy: IndexerStrategy) = VirtualThreadSyncIndexer(indexerStrategy)
+
+    @Test
+    internal fun `rethrows the failure to index a file`() {
+        val failingStrategy = IndexerStrategy { _, file, _ -> throw IllegalStateException("Can't index ${file.name}") }
+
+        val exception = assertThrows<IllegalStateException> {
+            VirtualThreadSyncIndexer(failingStrategy).buildIndex(Directory(Paths.get("src/test/resources/two-files")))
+        }
+
+        assertTrue(exception.message!!.startsWith("Can't index file-"), exception.message)
+    }
+
+    @Test
+    internal fun `indexes at most the max concurrency of files at a time`() {
+        val running = AtomicInteger()
+        val mostRunning = AtomicInteger()
+        val countingStrategy = IndexerStrategy { rootDirectory, file, fileText ->
+            mostRunning.accumulateAndGet(running.incrementAndGet(), ::maxOf)
+            try {
+                Thread.sleep(5)
+                IndexerStrategy.alwaysUseNaiveIndex().buildIndexFor(rootDirectory, file, fileText)
+            } finally {
+                running.decrementAndGet()
+            }
+        }
+
+        VirtualThreadSyncIndexer(countingStrategy, maxConcurrency = 2)
+            .buildIndex(Directory(Paths.get("src/test/resources/example-java-project")))
+
+        assertTrue(mostRunning.get() in 1..2, "At most ${mostRunning.get()} files were indexed at once")
+    }
+
+    @Test
+    internal fun `starts on the files with the most work first`() {
+        val directory = Directory(Paths.get("src/test/resources/example-java-project"))
+        val indexerStrategy = IndexerStrategy.alwaysUseNaiveIndex()
+        val indexedPaths = mutableListOf<String>()
+
+        VirtualThreadSyncIndexer(indexerStrategy, maxConcurrency = 1)
+            .buildIndex(directory, object : SyncIndexingProgressListener {
+                override fun onNewFileIndexed(indexedFile: IndexedFile) {
+                    indexedPaths.add(indexedFile.relativePath())
+                }
+            })
+
+        assertEquals(
+            IndexingSchedule.largestFirst(directory, indexerStrategy).map { directory.relativePathTo(it.path) },
+            indexedPaths
+        )
+    }
+}
@@ -6,8 +6,10 @@ import com.rrm.fulltextsearch.index.IndexedFile
 import com.rrm.fulltextsearch.indexer.IndexerStrategy
 import com.rrm.fulltextsearch.indexer.async.AsyncIndexer
 import com.rrm.fulltextsearch.indexer.async.AsyncIndexingProgressListener
+import com.rrm.fulltextsearch.indexer.sync.SyncIndexer
 import com.rrm.fulltextsearch.search.IndexedDirectory
 import org.junit.jupiter.api.Assumptions.assumeTrue
+import java.nio.file.Path
 import java.nio.file.Paths
 import kotlin.system.measureTimeMillis
 
@@ -16,15 +18,7 @@ fun collectAndPrintIndexingExecutionTimeData(
     numberOfTimesToBuildTheIndex: Int,
     indexerStrategy: IndexerStrategy = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 10000)
 ) {
-    val dirPath = Paths.get("../$directoryPathFromSourceRoot")
-
-    // If the directory doesn't exist, the test is marked as 'skipped'.
-    assumeTrue(
-        dirPath.toFile().exists(),
-        "Assumption not met: The specified directory for the performance " +
-                "test input doesn't exist. Clone it using the script: " +
-                "`scripts/fetch-performance-test-data.sh`."
-    )
+    val dirPath = existingInputDirectory(directoryPathFromSourceRoot)
 
     val executionTimes = mutableListOf<Long>()
     repeat(numberOfTimesToBuildTheIndex) {
@@ -48,4 +42,38 @@ fun collectAndPrintIndexingExecutionTimeData(
     val meanExecutionTime = executionTimes.toLongArray().sum() / numberOfTimesToBuildTheIndex
     println("Max execution time: ${maxExecutionTime}ms")
     println("Mean execution time: ${meanExecutionTime}ms")
-}
\ No newline at end of file
+}
+
+/**
+ * Builds the index of the directory with each of the sync indexers in turn, and prints the
+ * execution times of each, so they can be compared on the same input.
+ */
+fun compareAndPrintSyncIndexingExecutionTimeData(
+    directoryPathFromSourceRoot: String,
+    numberOfTimesToBuildTheIndex: Int,
+    indexers: Map<String, SyncIndexer>
+) {
+    val dirPath = existingInputDirectory(directoryPathFromSourceRoot)
+    for ((name, indexer) in indexers) {
+        // The first build warms up the JIT, so it isn't counted.
+        indexer.buildIndex(Directory(dirPath)).close()
+        val executionTimes = LongArray(numberOfTimesToBuildTheIndex) {
+            measureTimeMillis { indexer.buildIndex(Directory(dirPath)).close() }
+        }
+        println("$name: max execution time: ${executionTimes.maxOrNull()!!}ms")
+        println("$name: mean execution time: ${executionTimes.sum() / numberOfTimesToBuildTheIndex}ms")
+    }
+}
+
+private fun existingInputDirectory(directoryPathFromSourceRoot: String): Path {
+    val dirPath = Paths.get("../$directoryPathFromSourceRoot")
+
+    // If the directory doesn't exist, the test is marked as 'skipped'.
+    assumeTrue(
+        dirPath.toFile().exists(),
+        "Assumption not met: The specified directory for the performance " +
+                "test input doesn't exist. Clone it using the script: " +
+                "`scripts/fetch-performance-test-data.sh`."
+    )
+    return dirPath
+}
@@ -0,0 +1,43 @@
+@file:Suppress("SpellCheckingInspection")
+
+package com.rrm.fulltextsearch.performance_test.indexer
+
+import com.rrm.fulltextsearch.indexer.IndexerStrategy
+import com.rrm.fulltextsearch.indexer.sync.ParallelSyncIndexer
+import com.rrm.fulltextsearch.indexer.sync.SerialSyncIndexer
+import com.rrm.fulltextsearch.indexer.sync.VirtualThreadSyncIndexer
+import com.rrm.fulltextsearch.performance_test.PerformanceTest
+import org.junit.jupiter.api.Disabled
+import org.junit.jupiter.api.Test
+
+@PerformanceTest
+class SyncIndexerComparisonTest {
+    private val indexerStrategy = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 10000)
+
+    @Test
+    internal fun `comparing the sync indexers on a small Java program repository`() {
+        compareAndPrintSyncIndexingExecutionTimeData(
+            "example-input-directories/LSystems",
+            20,
+            mapOf(
+                "serial" to SerialSyncIndexer(indexerStrategy),
+                "parallel" to ParallelSyncIndexer(indexerStrategy),
+                "virtual threads" to VirtualThreadSyncIndexer(indexerStrategy)
+            )
+        )
+    }
+
+    @Disabled
+    @Test
+    internal fun `comparing the sync indexers on the kotlin web site repository`() {
+        compareAndPrintSyncIndexingExecutionTimeData(
+            "example-input-directories/kotlin-web-site",
+            3,
+            mapOf(
+                "serial" to SerialSyncIndexer(indexerStrategy),
+                "parallel" to ParallelSyncIndexer(indexerStrategy),
+                "virtual threads" to VirtualThreadSyncIndexer(indexerStrategy)
+            )
+        )
+    }
+}
@@ -15,8 +15,9 @@ class KotlinLangSearchTest {
         collectAndPrintSearchExecutionTimeData(
             "example-input-directories/kotlin",
             5,
-            // At the moment my implementation can't really handle this data set.
-            IndexerStrategy.default(suffixTreeMaxCharsThreshold = 10)
+            // The suffix trees of this data set don't fit in the heap, so the bigger files get the
+            // compressed FM-index instead.
+            IndexerStrategy.default(fmIndexMinCharsThreshold = 10000)
         )
     }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+@file:Suppress("SpellCheckingInspection")
+
+package com.rrm.fulltextsearch.performance_test.search
+
+import com.rrm.fulltextsearch.performance_test.PerformanceTest
+import com.rrm.fulltextsearch.search.QueryExecutor
+import org.junit.jupiter.api.Test
+
+@PerformanceTest
+class QueryExecutorComparisonTest {
+    @Test
+    internal fun `comparing the query executors with many blocking callers on a small Java program repository`() {
+        compareAndPrintConcurrentSearchExecutionTimeData(
+            "example-input-directories/LSystems",
+            64,
+            50,
+            mapOf(
+                "fork-join pool" to QueryExecutor.default(),
+                "virtual threads" to QueryExecutor.virtualThreads()
+            )
+        )
+    }
+}
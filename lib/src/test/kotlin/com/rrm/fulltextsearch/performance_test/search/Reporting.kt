@@ -6,10 +6,14 @@ import com.rrm.fulltextsearch.index.IndexedFile
 import com.rrm.fulltextsearch.indexer.IndexerStrategy
 import com.rrm.fulltextsearch.indexer.async.AsyncIndexer
 import com.rrm.fulltextsearch.indexer.async.AsyncIndexingProgressListener
+import com.rrm.fulltextsearch.indexer.sync.VirtualThreadSyncIndexer
 import com.rrm.fulltextsearch.randominput.RandomInput.generateRandomSearchQueryTerm
 import com.rrm.fulltextsearch.search.IndexedDirectory
+import com.rrm.fulltextsearch.search.QueryExecutor
 import org.opentest4j.TestAbortedException
+import java.nio.file.Path
 import java.nio.file.Paths
+import kotlin.concurrent.thread
 import kotlin.system.measureTimeMillis
 
 fun collectAndPrintSearchExecutionTimeData(
@@ -17,16 +21,7 @@ fun collectAndPrintSearchExecutionTimeData(
     numberOfSearchesToExecute: Int,
     indexerStrategy: IndexerStrategy = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 10000)
 ) {
-    val dirPath = Paths.get("../$directoryPathFromSourceRoot")
-    if (!dirPath.toFile().exists()) {
-        val message =
-            "Assumption not met: The specified directory for the performance " +
-                    "test input doesn't exist. Clone it using the script: " +
-                    "`scripts/fetch-performance-test-data.sh`."
-        println(message)
-        // This has the effect of marking the test as 'skipped'.
-        throw TestAbortedException(message)
-    }
+    val dirPath = existingInputDirectory(directoryPathFromSourceRoot)
     val indexedDirectory: IndexedDirectory = runBlocking {
         println("Indexing...")
         val indexer = AsyncIndexer.default(indexerStrategy = indexerStrategy)
@@ -49,6 +44,52 @@ fun collectAndPrintSearchExecutionTimeData(
     searchQueryPerformanceTester.printResults()
 }
 
+/**
+ * Searches the directory from several plain threads at once, as a Java service would, with each of
+ * the query executors in turn, and prints the total time taken by each.
+ */
+fun compareAndPrintConcurrentSearchExecutionTimeData(
+    directoryPathFromSourceRoot: String,
+    numberOfCallers: Int,
+    numberOfSearchesPerCaller: Int,
+    queryExecutors: Map<String, QueryExecutor>,
+    indexerStrategy: IndexerStrategy = IndexerStrategy.default(suffixTreeMaxCharsThreshold = 10000)
+) {
+    val dirPath = existingInputDirectory(directoryPathFromSourceRoot)
+    val queryTerms = List(numberOfCallers * numberOfSearchesPerCaller) { generateRandomSearchQueryTerm() }
+    for ((name, queryExecutor) in queryExecutors) {
+        VirtualThreadSyncIndexer(indexerStrategy, queryExecutor).buildIndex(Directory(dirPath)).use { indexedDirectory ->
+            // The first round warms up the JIT, so it isn't counted.
+            queryTerms.take(numberOfSearchesPerCaller).forEach { indexedDirectory.queryCaseSensitive(it) }
+            val executionTime = measureTimeMillis {
+                val callers = List(numberOfCallers) { caller ->
+                    thread {
+                        for (i in 0 until numberOfSearchesPerCaller) {
+                            indexedDirectory.queryCaseSensitive(queryTerms[caller * numberOfSearchesPerCaller + i])
+                        }
+                    }
+                }
+                callers.forEach { it.join() }
+            }
+            println("$name: ${queryTerms.size} searches from $numberOfCallers threads in ${executionTime}ms")
+        }
+    }
+}
+
+private fun existingInputDirectory(directoryPathFromSourceRoot: String): Path {
+    val dirPath = Paths.get("../$directoryPathFromSourceRoot")
+    if (!dirPath.toFile().exists()) {
+        val message =
+            "Assumption not met: The specified directory for the performance " +
+                    "test input doesn't exist. Clone it using the script: " +
+                    "`scripts/fetch-performance-test-data.sh`."
+        println(message)
+        // This has the effect of marking the test as 'skipped'.
+        throw TestAbortedException(message)
+    }
+    return dirPath
+}
+
 class SearchQueryPerformanceTester {
     private val results = mutableMapOf<String, Long>()
 
@@ -1,11 +1,26 @@
 package com.rrm.fulltextsearch.search
 
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.runBlocking
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.*
+import com.rrm.fulltextsearch.index.IndexedFile
 import com.rrm.fulltextsearch.index.naive.NaiveIndexedFile
+import com.rrm.fulltextsearch.index.trigram.TrigramIndex
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
 
 class IndexedDirectoryTest {
     @Test
@@ -101,6 +116,88 @@ class IndexedDirectoryTest {
         assertThat(eventCounter.numberOfReceivedEvents(), equalTo(1))
     }
 
+    @Test
+    internal fun `counts matches across files`() {
+        val indexedDirectory = IndexedDirectory(
+            listOf(
+                NaiveIndexedFile("file-1.txt", "abracadabra"),
+                NaiveIndexedFile("file-2.txt", "nothing interesting"),
+                NaiveIndexedFile("file-3.txt", "abra")
+            )
+        )
+
+        assertEquals(3, indexedDirectory.count("abra"))
+        assertEquals(0, indexedDirectory.count("xyz"))
+    }
+
+    @Test
+    internal fun `counts as many matches as it finds on overlapping input`() {
+        val indexedDirectory = IndexedDirectory(
+            listOf(NaiveIndexedFile("file-1.txt", "aaaa"), NaiveIndexedFile("file-2.txt", "abababa"))
+        )
+
+        assertEquals(indexedDirectory.queryCaseSensitive("aa").size, indexedDirectory.count("aa"))
+        assertEquals(indexedDirectory.queryCaseSensitive("aba").size, indexedDirectory.count("aba"))
+        assertEquals(6, indexedDirectory.count("aa") + indexedDirectory.count("aba"))
+    }
+
+    @Test
+    internal fun `lists the files which contain a query string`() {
+        val indexedDirectory = IndexedDirectory(
+            listOf(
+                NaiveIndexedFile("file-1.txt", "abracadabra"),
+                NaiveIndexedFile("file-2.txt", "nothing interesting"),
+                NaiveIndexedFile("file-3.txt", "abra")
+            )
+        )
+
+        assertEquals(setOf("file-1.txt", "file-3.txt"), indexedDirectory.filesContaining("abra"))
+        assertEquals(setOf<String>(), indexedDirectory.filesContaining("xyz"))
+    }
+
+    @Test
+    internal fun `streams the matches from every file`() {
+        val indexedDirectory = IndexedDirectory(
+            listOf(
+                NaiveIndexedFile("file-1.txt", "abracadabra"),
+                NaiveIndexedFile("file-2.txt", "nothing interesting"),
+                NaiveIndexedFile("file-3.txt", "abra")
+            )
+        )
+
+        val queryResults = runBlocking { indexedDirectory.queryCaseSensitiveFlow("abra").toList() }
+
+        assertThat(
+            queryResults, containsInAnyOrder(
+                QueryMatch("file-1.txt", 0),
+                QueryMatch("file-1.txt", 7),
+                QueryMatch("file-3.txt", 0)
+            )
+        )
+    }
+
+    @Test
+    internal fun `stops searching once it has found enough matches`() {
+        fun endlessFile(relativePath: String) = object : IndexedFile {
+            override fun relativePath() = relativePath
+
+            override fun query(queryString: String, fileId: Int) = lazyQuery(queryString, fileId).toList()
+
+            override fun lazyQuery(queryString: String, fileId: Int) =
+                generateSequence(0) { it + 1 }.map { QueryMatch(relativePath, it, fileId) }
+
+            override fun getLineOfChar(charOffset: Int) = ""
+
+            override fun getFileLineOfChar(charOffset: Int) = FileLine(1, charOffset + 1, "")
+        }
+        val indexedDirectory = IndexedDirectory(
+            listOf(endlessFile("file-1.txt"), endlessFile("file-2.txt"))
+        )
+
+        assertThat(indexedDirectory.queryCaseSensitive("abra", limit = 200), hasSize(200))
+        assertThat(indexedDirectory.queryCaseSensitive("abra", limit = 0), hasSize(0))
+    }
+
     @Test
     internal fun `gets line associated with query match from the indexed file`() {
         val indexedDirectory = IndexedDirectory(
@@ -112,4 +209,317 @@ class IndexedDirectoryTest {
             indexedDirectory.correspondingFileLine(QueryMatch("file-1.txt", 5))
         )
     }
-}
\ No newline at end of file
+
+    @Test
+    internal fun `collects the matches of each file into one run`() {
+        val indexedDirectory = IndexedDirectory(
+            (1..20).map { NaiveIndexedFile("file-$it.txt", if (it % 3 == 0) "abracadabra" else "nothing") }
+        )
+
+        val results = indexedDirectory.queryCaseSensitiveResults("a")
+
+        assertEquals(30, results.size)
+        assertEquals(listOf(2, 5, 8, 11, 14, 17), (0 until results.fileCount).map { results.fileId(it) })
+        assertEquals("file-9.txt", results.relativePath(2))
+        assertArrayEquals(intArrayOf(0, 3, 5, 7, 10), results.offsets(2))
+    }
+
+    @Test
+    internal fun `tags each match with the id of its file`() {
+        val indexedDirectory = IndexedDirectory(
+            listOf(
+                NaiveIndexedFile("file-1.txt", "abracadabra"),
+                NaiveIndexedFile("file-2.txt", "nothing interesting"),
+                NaiveIndexedFile("file-3.txt", "abra\ncadabra")
+            )
+        )
+
+        val queryResults = indexedDirectory.queryCaseSensitive("cad")
+
+        assertEquals(
+            mapOf("file-1.txt" to 0, "file-3.txt" to 2),
+            queryResults.associate { it.fileRelativePath to it.fileId }
+        )
+        assertEquals(
+            setOf("abracadabra", "cadabra"),
+            queryResults.map { indexedDirectory.correspondingFileLine(it) }.toSet()
+        )
+    }
+
+    @Test
+    internal fun `treats a match with a file id as the same match without one`() {
+        val withFileId = QueryMatch("file-1.txt", 3, 0)
+        val withoutFileId = QueryMatch("file-1.txt", 3)
+
+        assertEquals(withoutFileId, withFileId)
+        assertEquals(withoutFileId.hashCode(), withFileId.hashCode())
+        assertEquals(withoutFileId.toString(), withFileId.toString())
+        assertEquals(0, withFileId.fileId)
+    }
+
+    @Test
+    internal fun `tags each match with the id of its file when streaming or listening`() {
+        val indexedDirectory = IndexedDirectory(
+            listOf(
+                NaiveIndexedFile("file-1.txt", "abracadabra"),
+                NaiveIndexedFile("file-2.txt", "nothing interesting"),
+                NaiveIndexedFile("file-3.txt", "abra\ncadabra")
+            )
+        )
+        val collector = QueryMatchListener.MatchCollector()
+
+        val streamedMatches = runBlocking {
+            indexedDirectory.queryCaseSensitiveAsync("cad", collector)
+            indexedDirectory.queryCaseSensitiveFlow("cad").toList()
+        }
+
+        val expectedFileIds = mapOf("file-1.txt" to 0, "file-3.txt" to 2)
+        assertEquals(expectedFileIds, streamedMatches.associate { it.fileRelativePath to it.fileId })
+        assertEquals(expectedFileIds, collector.matches().associate { it.fileRelativePath to it.fileId })
+    }
+
+    @Test
+    internal fun `resolves matches without a file id by their path`() {
+        val indexedDirectory = IndexedDirectory(
+            listOf(
+                NaiveIndexedFile("file-1.txt", "abracadabra"),
+                NaiveIndexedFile("file-2.txt", "abra\ncadabra")
+            )
+        )
+
+        assertEquals("cadabra", indexedDirectory.correspondingFileLine(QueryMatch("file-2.txt", 6)))
+        assertEquals("cadabra", indexedDirectory.correspondingFileLine(QueryMatch("file-2.txt", 6, 0)))
+        assertThrows<NoSuchElementException> {
+            indexedDirectory.correspondingFileLine(QueryMatch("file-3.txt", 6))
+        }
+    }
+
+    @Test
+    internal fun `finds the same matches whichever batch each file is in`() {
+        val files = (1..50).map {
+            NaiveIndexedFile("file-$it.txt", "abracadabra ".repeat(it % 7 * 100))
+        }
+        val indexedDirectory = IndexedDirectory(files, QueryExecutor.withParallelism(3))
+
+        val results = indexedDirectory.queryCaseSensitiveResults("cad")
+
+        assertEquals(files.sumOf { it.count("cad") }, results.size)
+        val fileIds = (0 until results.fileCount).map { results.fileId(it) }
+        assertEquals(fileIds.sorted(), fileIds)
+        assertEquals(results.toQueryMatches(), runBlocking { indexedDirectory.queryCaseSensitiveResultsAsync("cad") }.toQueryMatches())
+    }
+
+    @Test
+    internal fun `doesn't block a caller which is running in a coroutine`() {
+        val queryStarted = AtomicBoolean(false)
+        val callerIsFree = CountDownLatch(1)
+        val waitingFile = object : IndexedFile {
+            override fun relativePath() = "file-1.txt"
+
+            override fun query(queryString: String, fileId: Int): List<QueryMatch> {
+                queryStarted.set(true)
+                // This only finishes in time if the caller's thread is free to count the latch down.
+                return if (callerIsFree.await(10, TimeUnit.SECONDS)) listOf(QueryMatch("file-1.txt", 0)) else listOf()
+            }
+
+            override fun getLineOfChar(charOffset: Int) = ""
+
+            override fun getFileLineOfChar(charOffset: Int) = FileLine(1, charOffset + 1, "")
+        }
+        val indexedDirectory = IndexedDirectory(
+            listOf(waitingFile, NaiveIndexedFile("file-2.txt", "abra")),
+            QueryExecutor.withParallelism(2)
+        )
+
+        val results = runBlocking {
+            val query = async { indexedDirectory.queryCaseSensitiveResultsAsync("abra") }
+            while (!queryStarted.get()) {
+                delay(1)
+            }
+            callerIsFree.countDown()
+            query.await()
+        }
+
+        assertEquals(2, results.size)
+    }
+
+    @Test
+    internal fun `answers a repeated query from its cache`() {
+        var queries = 0
+        val countingFile = object : IndexedFile {
+            override fun relativePath() = "file-1.txt"
+
+            override fun query(queryString: String, fileId: Int): List<QueryMatch> {
+                queries++
+                return listOf(QueryMatch("file-1.txt", 0))
+            }
+
+            override fun getLineOfChar(charOffset: Int) = ""
+
+            override fun getFileLineOfChar(charOffset: Int) = FileLine(1, charOffset + 1, "")
+        }
+        val cache = QueryResultCache(1_000_000)
+        val indexedDirectory = IndexedDirectory(listOf(countingFile), queryResultCache = cache)
+
+        val first = indexedDirectory.queryCaseSensitive("abra")
+        val second = indexedDirectory.queryCaseSensitive("abra")
+        val async = runBlocking { indexedDirectory.queryCaseSensitiveResultsAsync("abra") }.toQueryMatches()
+
+        assertEquals(first, second)
+        assertEquals(first, async)
+        assertEquals(1, queries)
+        assertEquals(QueryResultCache.Stats(hits = 2, misses = 1, entries = 1, sizeInBytes = cache.stats().sizeInBytes), cache.stats())
+
+        indexedDirectory.close()
+        assertEquals(0, cache.stats().entries)
+    }
+
+    @Test
+    internal fun `doesn't search the files which rule out the query string`() {
+        val searchedFiles = mutableListOf<String>()
+        // The naive index's own summary rules out the file without 'ab' in it.
+        fun summarizedFile(relativePath: String, fileText: String) = object : IndexedFile by NaiveIndexedFile(relativePath, fileText) {
+            override fun queryOffsets(queryString: String): IntArray {
+                searchedFiles.add(relativePath)
+                return NaiveIndexedFile(relativePath, fileText).queryOffsets(queryString)
+            }
+        }
+        val indexedDirectory = IndexedDirectory(
+            listOf(
+                summarizedFile("file-1.txt", "abracadabra"),
+                summarizedFile("file-2.txt", "nothing interesting"),
+                summarizedFile("file-3.txt", "abra")
+            )
+        )
+
+        assertEquals(3, indexedDirectory.queryCaseSensitiveResults("abra").size)
+        assertEquals(listOf("file-1.txt", "file-3.txt"), searchedFiles.sorted())
+    }
+
+    @Test
+    internal fun `returns the matches found before the deadline, flagged as truncated`() {
+        fun slowFile(relativePath: String) = object : IndexedFile by NaiveIndexedFile(relativePath, "abra") {
+            override fun queryOffsets(queryString: String): IntArray {
+                Thread.sleep(50)
+                return intArrayOf(0)
+            }
+        }
+        val indexedDirectory = IndexedDirectory(
+            (1..20).map { slowFile("file-$it.txt") },
+            QueryExecutor.withParallelism(2)
+        )
+
+        val partialResults = indexedDirectory.queryCaseSensitiveResults("abra", 120.milliseconds)
+
+        assertTrue(partialResults.isTruncated)
+        assertTrue(partialResults.filesCompleted in 1 until 20, "Completed ${partialResults.filesCompleted}")
+        assertEquals(20, partialResults.filesCompleted + partialResults.filesSkipped)
+        assertEquals(partialResults.filesCompleted, partialResults.results.size)
+    }
+
+    @Test
+    internal fun `returns all the matches when the deadline isn't reached`() {
+        val indexedDirectory = IndexedDirectory(
+            (1..20).map { NaiveIndexedFile("file-$it.txt", if (it % 3 == 0) "abracadabra" else "nothing") }
+        )
+
+        val partialResults = indexedDirectory.queryCaseSensitiveResults("abra", 10.seconds)
+        val asyncResults = runBlocking { indexedDirectory.queryCaseSensitiveResultsAsync("abra", 10.seconds) }
+
+        assertEquals(PartialQueryResults(partialResults.results, 20, 0), partialResults)
+        assertFalse(partialResults.isTruncated)
+        assertEquals(indexedDirectory.queryCaseSensitive("abra"), partialResults.results.toQueryMatches())
+        assertEquals(partialResults.results.toQueryMatches(), asyncResults.results.toQueryMatches())
+    }
+
+    @Test
+    internal fun `passes the deadline on to its directory index`() {
+        val indexedDirectory = IndexedDirectory(
+            TrigramIndex.construct((1..20).map { Pair("file-$it.txt", "abracadabra") })
+        )
+
+        val pastDeadline = indexedDirectory.queryCaseSensitiveResults("abra", Duration.ZERO)
+        val asyncPastDeadline = runBlocking { indexedDirectory.queryCaseSensitiveResultsAsync("abra", Duration.ZERO) }
+
+        assertEquals(0, pastDeadline.results.size)
+        assertEquals(20, pastDeadline.filesSkipped)
+        assertEquals(20, asyncPastDeadline.filesSkipped)
+        assertEquals(40, indexedDirectory.queryCaseSensitiveResults("abra", 10.seconds).results.size)
+    }
+
+    @Test
+    internal fun `closes each indexed file when closed`() {
+        val closedFiles = mutableListOf<String>()
+        fun closeTrackingFile(relativePath: String) = object : IndexedFile {
+            override fun relativePath() = relativePath
+
+            override fun query(queryString: String, fileId: Int) = listOf<QueryMatch>()
+
+            override fun getLineOfChar(charOffset: Int) = ""
+
+            override fun getFileLineOfChar(charOffset: Int) = FileLine(1, charOffset + 1, "")
+
+            override fun close() {
+                closedFiles.add(relativePath)
+            }
+        }
+        val indexedDirectory = IndexedDirectory(
+            listOf(closeTrackingFile("file-1.txt"), closeTrackingFile("file-2.txt"))
+        )
+
+        indexedDirectory.close()
+
+        assertEquals(listOf("file-1.txt", "file-2.txt"), closedFiles)
+    }
+
+    @Test
+    internal fun `closes every indexed file even if some fail to close`() {
+        val closedFiles = mutableListOf<String>()
+        fun failingFile(relativePath: String) = object : IndexedFile {
+            override fun relativePath() = relativePath
+
+            override fun query(queryString: String, fileId: Int) = listOf<QueryMatch>()
+
+            override fun getLineOfChar(charOffset: Int) = ""
+
+            override fun getFileLineOfChar(charOffset: Int) = FileLine(1, charOffset + 1, "")
+
+            override fun close() {
+                closedFiles.add(relativePath)
+                throw IllegalStateException("Can't close $relativePath")
+            }
+        }
+        val indexedDirectory = IndexedDirectory(
+            listOf(failingFile("file-1.txt"), failingFile("file-2.txt"), failingFile("file-3.txt"))
+        )
+
+        val exception = assertThrows<IllegalStateException> { indexedDirectory.close() }
+
+        assertEquals(listOf("file-1.txt", "file-2.txt", "file-3.txt"), closedFiles)
+        assertEquals("Can't close file-1.txt", exception.message)
+        assertEquals(
+            listOf("Can't close file-2.txt", "Can't close file-3.txt"),
+            exception.suppressed.map { it.message }
+        )
+    }
+
+    @Test
+    internal fun `can't be queried once closed`() {
+        val cache = QueryResultCache(1_000_000)
+        val indexedDirectory = IndexedDirectory(listOf(NaiveIndexedFile("file-1.txt", "abracadabra")), queryResultCache = cache)
+        val match = indexedDirectory.queryCaseSensitive("abra").first()
+
+        indexedDirectory.close()
+        indexedDirectory.close()
+
+        assertThrows<IllegalStateException> { indexedDirectory.queryCaseSensitive("abra") }
+        assertThrows<IllegalStateException> { indexedDirectory.queryCaseSensitiveResults("abra", 1.seconds) }
+        assertThrows<IllegalStateException> { runBlocking { indexedDirectory.queryCaseSensitiveResultsAsync("abra") } }
+        assertThrows<IllegalStateException> { indexedDirectory.queryCaseSensitiveFlow("abra") }
+        assertThrows<IllegalStateException> { indexedDirectory.count("abra") }
+        assertThrows<IllegalStateException> { indexedDirectory.filesContaining("abra") }
+        assertThrows<IllegalStateException> { indexedDirectory.correspondingFileLine(match) }
+        assertThrows<IllegalStateException> { indexedDirectory.typeAheadSession() }
+        assertEquals(0, cache.stats().entries)
+    }
+}
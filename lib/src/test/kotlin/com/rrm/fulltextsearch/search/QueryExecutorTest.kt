@@ -0,0 +1,95 @@
+package com.rrm.fulltextsearch.search
+
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class QueryExecutorTest {
+    @Test
+    internal fun `shares the items out into batches of about the same weight`() {
+        val executor = QueryExecutor.withParallelism(2)
+        val weights = IntArray(100) { if (it % 10 == 0) 1000 else it }
+
+        val batches = executor.partition(weights)
+
+        assertEquals(8, batches.size)
+        assertEquals(weights.indices.toList(), batches.flatMap { it.toList() }.sorted())
+        batches.forEach { assertEquals(it.sorted(), it.toList()) }
+        val loads = batches.map { batch -> batch.sumOf { weights[it] } }
+        assertTrue(loads.maxOrNull()!! - loads.minOrNull()!! <= 1000, "The loads were $loads")
+    }
+
+    @Test
+    internal fun `makes no more batches than there are items`() {
+        val executor = QueryExecutor.withParallelism(4)
+
+        assertEquals(listOf(listOf(0), listOf(1)), executor.partition(intArrayOf(5, 5)).map { it.toList() })
+        assertEquals(listOf<IntArray>(), executor.partition(IntArray(0)))
+    }
+
+    @Test
+    internal fun `gives a huge item a batch of its own`() {
+        val executor = QueryExecutor.withParallelism(1)
+        val weights = intArrayOf(1, 1, 1_000_000, 1, 1, 1, 1, 1)
+
+        val batches = executor.partition(weights)
+
+        assertTrue(batches.any { it.toList() == listOf(2) })
+    }
+
+    @Test
+    internal fun `runs the work on its own dispatcher`() {
+        val dispatcher = Executors.newSingleThreadExecutor { Thread(it, "query-worker") }.asCoroutineDispatcher()
+        val executor = QueryExecutor(dispatcher, 1)
+
+        val threads = runBlocking {
+            executor.execute(listOf(intArrayOf(0), intArrayOf(1))) { Thread.currentThread().name }
+        }
+
+        assertEquals(listOf("query-worker", "query-worker"), threads)
+        dispatcher.close()
+    }
+
+    @Test
+    internal fun `runs the work of a blocking caller on its executor service`() {
+        val executorService = Executors.newSingleThreadExecutor { Thread(it, "query-worker") }
+        val executor = QueryExecutor(executorService, 1)
+
+        val threads = executor.executeBlocking(listOf(intArrayOf(0), intArrayOf(1))) { Thread.currentThread().name }
+
+        assertEquals(listOf("query-worker", "query-worker"), threads)
+        executorService.shutdown()
+    }
+
+    @Test
+    internal fun `runs each batch of a virtual thread executor on a thread of its own`() {
+        val executor = QueryExecutor.virtualThreads(2)
+        val batches = executor.partition(IntArray(8) { 1 })
+
+        // Each batch waits for all the others to start, which they can only do on threads of their own.
+        val started = CountDownLatch(batches.size)
+        val threads = executor.executeBlocking(batches) {
+            started.countDown()
+            assertTrue(started.await(10, TimeUnit.SECONDS))
+            Thread.currentThread()
+        }
+
+        assertEquals(8, threads.toSet().size)
+        assertTrue(threads.none { it == Thread.currentThread() })
+    }
+
+    @Test
+    internal fun `rethrows the failure of a batch to a blocking caller`() {
+        val executor = QueryExecutor.virtualThreads(1)
+
+        assertThrows<IllegalArgumentException> {
+            executor.executeBlocking(listOf(intArrayOf(0), intArrayOf(1))) { require(it[0] == 0) }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.rrm.fulltextsearch.search
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class QueryResultCacheTest {
+    private fun resultsWithMatches(matches: Int): QueryResults =
+        QueryResults.Builder().apply { add(0, "file.txt", IntArray(matches) { it }) }.build()
+
+    @Test
+    internal fun `counts hits and misses`() {
+        val cache = QueryResultCache(1_000_000)
+        val results = resultsWithMatches(10)
+
+        assertNull(cache.get("abra"))
+        cache.put("abra", results)
+        assertSame(results, cache.get("abra"))
+        assertSame(results, cache.get("abra"))
+
+        val stats = cache.stats()
+        assertEquals(2, stats.hits)
+        assertEquals(1, stats.misses)
+        assertEquals(1, stats.entries)
+        assertEquals(2.0 / 3, stats.hitRate)
+    }
+
+    @Test
+    internal fun `evicts the least recently used results when it is full`() {
+        val results = resultsWithMatches(100)
+        val cache = QueryResultCache(3 * 600L)
+
+        cache.put("a", results)
+        cache.put("b", results)
+        cache.put("c", results)
+        cache.get("a")
+        cache.put("d", results)
+
+        assertSame(results, cache.get("a"))
+        assertNull(cache.get("b"))
+        assertSame(results, cache.get("c"))
+        assertSame(results, cache.get("d"))
+        assertEquals(3, cache.stats().entries)
+    }
+
+    @Test
+    internal fun `is bounded by the size of the results rather than their number`() {
+        val cache = QueryResultCache(10_000)
+
+        repeat(10) { cache.put("small-$it", resultsWithMatches(10)) }
+        cache.put("large", resultsWithMatches(2_000))
+        cache.put("huge", resultsWithMatches(100_000))
+
+        assertNull(cache.get("huge"))
+        assertNotNull(cache.get("large"))
+        assertNull(cache.get("small-0"))
+        assertNotNull(cache.get("small-9"))
+        assertTrue(cache.stats().sizeInBytes <= 10_000)
+    }
+
+    @Test
+    internal fun `drops everything when invalidated`() {
+        val cache = QueryResultCache(1_000_000)
+        cache.put("abra", resultsWithMatches(10))
+
+        cache.invalidate()
+
+        assertNull(cache.get("abra"))
+        assertEquals(0, cache.stats().entries)
+        assertEquals(0, cache.stats().sizeInBytes)
+    }
+}
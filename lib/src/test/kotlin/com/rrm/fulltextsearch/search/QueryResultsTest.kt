@@ -0,0 +1,51 @@
+package com.rrm.fulltextsearch.search
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class QueryResultsTest {
+    @Test
+    internal fun `groups offsets by file`() {
+        val builder = QueryResults.Builder(expectedFiles = 1, expectedMatches = 1)
+        builder.add(3, "file-3.txt", intArrayOf(5, 8, 13))
+        builder.add(4, "file-4.txt", intArrayOf())
+        builder.add(7, "file-7.txt", intArrayOf(0, 1, 2, 3, 4), from = 1, to = 3)
+        val results = builder.build()
+
+        assertEquals(5, results.size)
+        assertEquals(2, results.fileCount)
+        assertEquals(3, results.fileId(0))
+        assertEquals("file-7.txt", results.relativePath(1))
+        assertArrayEquals(intArrayOf(5, 8, 13), results.offsets(0))
+        assertArrayEquals(intArrayOf(1, 2), results.offsets(1))
+        assertEquals(
+            listOf(
+                QueryMatch("file-3.txt", 5),
+                QueryMatch("file-3.txt", 8),
+                QueryMatch("file-3.txt", 13),
+                QueryMatch("file-7.txt", 1),
+                QueryMatch("file-7.txt", 2)
+            ),
+            results.toQueryMatches()
+        )
+        assertEquals(listOf(3, 3, 3, 7, 7), results.toQueryMatches().map { it.fileId })
+    }
+
+    @Test
+    internal fun `concatenates the results of several workers`() {
+        val first = QueryResults.Builder().apply { add(0, "a.txt", intArrayOf(1)) }.build()
+        val second = QueryResults.Builder().apply {
+            add(1, "b.txt", intArrayOf(2, 3))
+            add(2, "c.txt", intArrayOf(4))
+        }.build()
+
+        val results = QueryResults.concatenate(listOf(first, QueryResults.EMPTY, second))
+
+        val matches = mutableListOf<Pair<Int, Int>>()
+        results.forEachMatch { fileId, offset -> matches.add(Pair(fileId, offset)) }
+        assertEquals(listOf(Pair(0, 1), Pair(1, 2), Pair(1, 3), Pair(2, 4)), matches)
+        assertTrue(QueryResults.concatenate(listOf(QueryResults.EMPTY)).isEmpty())
+    }
+}
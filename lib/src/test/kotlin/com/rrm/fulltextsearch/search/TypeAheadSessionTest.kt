@@ -0,0 +1,199 @@
+package com.rrm.fulltextsearch.search
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
+import com.rrm.fulltextsearch.index.DirectoryIndex
+import com.rrm.fulltextsearch.index.IndexedFile
+import com.rrm.fulltextsearch.index.PrefixCursor
+import com.rrm.fulltextsearch.index.corpus.CorpusIndex
+import com.rrm.fulltextsearch.index.naive.NaiveIndexedFile
+import com.rrm.fulltextsearch.index.suffixtree.SuffixTreeIndexedFile
+import com.rrm.fulltextsearch.index.trigram.TrigramIndex
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class TypeAheadSessionTest {
+    private val indexedDirectory = IndexedDirectory(
+        listOf(
+            SuffixTreeIndexedFile("file-1.txt", "abracadabra"),
+            SuffixTreeIndexedFile("file-2.txt", "nothing interesting"),
+            NaiveIndexedFile("file-3.txt", "abra\ncadabra")
+        )
+    )
+
+    @Test
+    internal fun `finds the same matches as a query as each char is typed`() {
+        val session = indexedDirectory.typeAheadSession()
+
+        for (queryString in listOf("a", "ab", "abr", "abra", "abrac", "abracx")) {
+            val results = runBlocking { session.update(queryString) }!!
+            assertEquals(
+                indexedDirectory.queryCaseSensitive(queryString).toSet(),
+                results.toQueryMatches().toSet(),
+                "For '$queryString'"
+            )
+        }
+    }
+
+    @Test
+    internal fun `queries a directory index rather than each of its files`() {
+        val files = listOf(
+            Pair("file-1.txt", "abracadabra"),
+            Pair("file-2.txt", "nothing interesting"),
+            Pair("file-3.txt", "abra\ncadabra")
+        )
+        val corpusIndex = CorpusIndex.construct(files)
+        // The files of a directory index have no cursors of their own, so they mustn't be asked.
+        val withoutCursors = object : DirectoryIndex by corpusIndex {
+            override fun indexedFiles(): List<IndexedFile> = corpusIndex.indexedFiles().map {
+                object : IndexedFile by it {
+                    override fun prefixCursor(): PrefixCursor = throw AssertionError("${it.relativePath()} was asked for a cursor")
+                }
+            }
+        }
+
+        for (directoryIndex in listOf(withoutCursors, TrigramIndex.construct(files))) {
+            val indexedDirectory = IndexedDirectory(directoryIndex)
+            val session = indexedDirectory.typeAheadSession()
+            for (queryString in listOf("c", "ca", "cad", "cadx", "ca", "in")) {
+                val results = runBlocking { session.update(queryString) }!!
+                assertEquals(
+                    indexedDirectory.queryCaseSensitive(queryString).toSet(),
+                    results.toQueryMatches().toSet(),
+                    "For '$queryString'"
+                )
+            }
+            assertEquals(listOf("file-2.txt"), session.matchingFiles())
+        }
+    }
+
+    @Test
+    internal fun `only keeps the files which still match`() {
+        val session = indexedDirectory.typeAheadSession()
+
+        runBlocking { session.update("in") }
+        assertEquals(listOf("file-2.txt"), session.matchingFiles())
+        runBlocking { session.update("c") }
+        assertEquals(listOf("file-1.txt", "file-3.txt"), session.matchingFiles())
+        runBlocking { session.update("cad") }
+        assertEquals(listOf("file-1.txt", "file-3.txt"), session.matchingFiles())
+        runBlocking { session.update("cadx") }
+        assertEquals(listOf<String>(), session.matchingFiles())
+    }
+
+    @Test
+    internal fun `goes back to the matches of a prefix when chars are deleted`() {
+        val session = indexedDirectory.typeAheadSession()
+
+        runBlocking { session.update("abrax") }
+        val results = runBlocking { session.update("abr") }!!
+
+        assertEquals(indexedDirectory.queryCaseSensitive("abr").toSet(), results.toQueryMatches().toSet())
+        assertEquals(QueryResults.EMPTY.size, runBlocking { session.update("") }!!.size)
+    }
+
+    @Test
+    internal fun `only extends the cursors of the files which still match`() {
+        val extendedFiles = mutableListOf<String>()
+        fun trackingFile(relativePath: String, fileText: String) = object : IndexedFile by NaiveIndexedFile(relativePath, fileText) {
+            override fun prefixCursor(): PrefixCursor = trackingCursor(NaiveIndexedFile(relativePath, fileText).prefixCursor())
+
+            private fun trackingCursor(cursor: PrefixCursor): PrefixCursor = object : PrefixCursor {
+                override fun extendedBy(c: Char): PrefixCursor? {
+                    extendedFiles.add(relativePath)
+                    return cursor.extendedBy(c)?.let { trackingCursor(it) }
+                }
+
+                override fun offsets(): IntArray = cursor.offsets()
+            }
+        }
+        val session = IndexedDirectory(
+            listOf(trackingFile("file-1.txt", "abracadabra"), trackingFile("file-2.txt", "nothing"))
+        ).typeAheadSession()
+
+        runBlocking {
+            session.update("a")
+            session.update("ab")
+            session.update("abr")
+        }
+
+        assertEquals(listOf("file-1.txt", "file-2.txt", "file-1.txt", "file-1.txt"), extendedFiles)
+    }
+
+    @Test
+    internal fun `cancels the collection of matches when the next query string arrives`() {
+        val collecting = CompletableDeferred<Unit>()
+        val slowFile = object : IndexedFile by NaiveIndexedFile("file-1.txt", "abracadabra") {
+            override fun prefixCursor(): PrefixCursor = slowCursor("")
+
+            private fun slowCursor(queryString: String): PrefixCursor = object : PrefixCursor {
+                override fun extendedBy(c: Char): PrefixCursor = slowCursor(queryString + c)
+
+                override fun offsets(): IntArray {
+                    if (queryString == "a") {
+                        collecting.complete(Unit)
+                        Thread.sleep(200)
+                    }
+                    return IntArray(0)
+                }
+            }
+        }
+        val session = IndexedDirectory(
+            listOf(slowFile, NaiveIndexedFile("file-2.txt", "abracadabra"))
+        ).typeAheadSession()
+
+        val (first, second) = runBlocking {
+            val first = async { session.update("a") }
+            collecting.await()
+            val second = session.update("ab")
+            Pair(first.await(), second)
+        }
+
+        assertNull(first)
+        assertEquals(2, second!!.size)
+    }
+
+    @Test
+    internal fun `cancels the extension of the cursors when the next query string arrives`() {
+        val extending = CompletableDeferred<Unit>()
+        val nextQueryDone = CountDownLatch(1)
+        val nextQueryDidntWait = AtomicBoolean(false)
+        val extendedFiles = mutableListOf<String>()
+        fun slowFile(relativePath: String) = object : IndexedFile by NaiveIndexedFile(relativePath, "abracadabra") {
+            override fun prefixCursor(): PrefixCursor = object : PrefixCursor {
+                override fun extendedBy(c: Char): PrefixCursor? {
+                    if (c == 'x') {
+                        synchronized(extendedFiles) { extendedFiles.add(relativePath) }
+                        extending.complete(Unit)
+                        nextQueryDidntWait.set(nextQueryDone.await(10, TimeUnit.SECONDS))
+                    }
+                    return null
+                }
+
+                override fun offsets(): IntArray = IntArray(0)
+            }
+        }
+        val session = IndexedDirectory(
+            listOf(slowFile("file-1.txt"), slowFile("file-2.txt")),
+            QueryExecutor.withParallelism(2)
+        ).typeAheadSession()
+
+        val first = runBlocking {
+            val first = async { session.update("x") }
+            extending.await()
+            session.update("b")
+            nextQueryDone.countDown()
+            first.await()
+        }
+
+        assertNull(first)
+        assertTrue(nextQueryDidntWait.get())
+        assertEquals(listOf("file-1.txt"), extendedFiles)
+    }
+}